@@ -0,0 +1,208 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compact binary layout of a {@link Restaurant}, several times smaller than its JSON and
+ * decoded without any reflection.
+ *   - 1 byte format version
+ *   - restaurantId, name, city, imageUrl, opensAt, closesAt as strings
+ *   - latitude, longitude as nullable doubles
+ *   - attribute count as a varint (0 for null, n + 1 otherwise) followed by the attributes
+ * Strings are a varint (0 for null, byte length + 1 otherwise) followed by UTF-8 bytes.
+ * Nullable doubles are a presence byte followed by 8 big-endian bytes when present.
+ */
+@Component
+@ConditionalOnProperty(name = "qeats.cache.codec", havingValue = "binary", matchIfMissing = true)
+public class BinaryRestaurantCodec implements RestaurantCodec {
+
+  private static final byte VERSION = 1;
+
+  @Override
+  public byte[] encode(Restaurant restaurant) {
+    Writer writer = new Writer();
+    writer.writeByte(VERSION);
+    writer.writeString(restaurant.getRestaurantId());
+    writer.writeString(restaurant.getName());
+    writer.writeString(restaurant.getCity());
+    writer.writeString(restaurant.getImageUrl());
+    writer.writeString(restaurant.getOpensAt());
+    writer.writeString(restaurant.getClosesAt());
+    writer.writeDouble(restaurant.getLatitude());
+    writer.writeDouble(restaurant.getLongitude());
+    List<String> attributes = restaurant.getAttributes();
+    if (attributes == null) {
+      writer.writeVarint(0);
+    } else {
+      writer.writeVarint(attributes.size() + 1);
+      for (String attribute : attributes) {
+        writer.writeString(attribute);
+      }
+    }
+    return writer.toByteArray();
+  }
+
+  @Override
+  public Restaurant decode(byte[] payload) throws IOException {
+    Reader reader = new Reader(payload);
+    int version = reader.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported restaurant payload version " + version);
+    }
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId(reader.readString());
+    restaurant.setName(reader.readString());
+    restaurant.setCity(reader.readString());
+    restaurant.setImageUrl(reader.readString());
+    restaurant.setOpensAt(reader.readString());
+    restaurant.setClosesAt(reader.readString());
+    restaurant.setLatitude(reader.readDouble());
+    restaurant.setLongitude(reader.readDouble());
+    int attributeCount = reader.readVarint();
+    if (attributeCount == 0) {
+      restaurant.setAttributes(null);
+    } else {
+      List<String> attributes = new ArrayList<>(attributeCount - 1);
+      for (int i = 1; i < attributeCount; i++) {
+        attributes.add(reader.readString());
+      }
+      restaurant.setAttributes(attributes);
+    }
+    if (reader.remaining() != 0) {
+      throw new IOException("Trailing bytes in restaurant payload");
+    }
+    return restaurant;
+  }
+
+  private static final class Writer {
+
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    void writeVarint(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7f) != 0) {
+        buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    void writeString(String value) {
+      if (value == null) {
+        writeVarint(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarint(bytes.length + 1);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    void writeDouble(Double value) {
+      if (value == null) {
+        writeByte(0);
+        return;
+      }
+      writeByte(1);
+      long bits = Double.doubleToLongBits(value);
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (bits >>> shift);
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      }
+    }
+  }
+
+  private static final class Reader {
+
+    private final byte[] buffer;
+    private int position;
+
+    Reader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    int remaining() {
+      return buffer.length - position;
+    }
+
+    int readByte() throws IOException {
+      require(1);
+      return buffer[position++];
+    }
+
+    int readVarint() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readByte();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          if (value < 0) {
+            throw new IOException("Negative length in restaurant payload");
+          }
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint in restaurant payload");
+    }
+
+    String readString() throws IOException {
+      int length = readVarint();
+      if (length == 0) {
+        return null;
+      }
+      length--;
+      require(length);
+      String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    Double readDouble() throws IOException {
+      if (readByte() == 0) {
+        return null;
+      }
+      require(8);
+      long bits = 0;
+      for (int i = 0; i < 8; i++) {
+        bits = (bits << 8) | (buffer[position++] & 0xff);
+      }
+      return Double.longBitsToDouble(bits);
+    }
+
+    private void require(int length) throws IOException {
+      if (length > remaining()) {
+        throw new IOException("Truncated restaurant payload");
+      }
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Human readable cache entries, handy when inspecting Redis by hand.
+@Component
+@ConditionalOnProperty(name = "qeats.cache.codec", havingValue = "json")
+public class JsonRestaurantCodec implements RestaurantCodec {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private static final ObjectWriter WRITER = OBJECT_MAPPER.writerFor(Restaurant.class);
+
+  private static final ObjectReader READER = OBJECT_MAPPER.readerFor(Restaurant.class);
+
+  @Override
+  public byte[] encode(Restaurant restaurant) throws IOException {
+    return WRITER.writeValueAsBytes(restaurant);
+  }
+
+  @Override
+  public Restaurant decode(byte[] payload) throws IOException {
+    return READER.readValue(payload);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * A Lua script run atomically by Redis.
+ * Scripts are sent by their SHA-1 digest, and only sent in full the first time a server does
+ * not know them yet, e.g. after a restart.
+ */
+public class LuaScript {
+
+  private final String source;
+
+  private final String sha1;
+
+  public LuaScript(String source) {
+    this.source = source;
+    this.sha1 = sha1Hex(source);
+  }
+
+  public Object eval(Jedis jedis, List<String> keys, List<String> args) {
+    try {
+      return jedis.evalsha(sha1, keys, args);
+    } catch (JedisDataException e) {
+      if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+        throw e;
+      }
+      return jedis.eval(source, keys, args);
+    }
+  }
+
+  private static String sha1Hex(String source) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1")
+          .digest(source.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is not available", e);
+    }
+  }
+}
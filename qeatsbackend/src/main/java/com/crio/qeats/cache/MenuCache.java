@@ -0,0 +1,90 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Menu;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process cache of menus keyed by restaurantId, so that adding an item to a cart or
+ * removing one does not reload the whole menu from the database.
+ * Restaurants without a menu are cached as well. Concurrent misses on the same restaurant wait
+ * for a single load. Entries are dropped after a short TTL, since other instances cannot
+ * invalidate them, and right away when a menu is saved or deleted through Spring Data. Hit and
+ * miss counts are published as the cache.* metrics tagged cache=menus.
+ */
+@Component
+public class MenuCache {
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private long maximumSize = 5000;
+
+  private long expireAfterWriteSeconds = 60;
+
+  private Cache<String, Optional<Menu>> menus;
+
+  @Value("${qeats.cache.menu.maximumSize:5000}")
+  public void setMaximumSize(long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  @Value("${qeats.cache.menu.expireAfterWriteSeconds:60}")
+  public void setExpireAfterWriteSeconds(long expireAfterWriteSeconds) {
+    this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+  }
+
+  @PostConstruct
+  public void initCache() {
+    menus = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    if (meterRegistry != null) {
+      GuavaCacheMetrics.monitor(meterRegistry, menus, "menus");
+    }
+  }
+
+  /**
+   * Returns the cached menu of the restaurant, loading it on a miss.
+   * The returned menu is shared: do not modify it.
+   * @param loader loads the menu, or returns null if the restaurant has none
+   * @return the menu, or null if the restaurant has none
+   */
+  public Menu get(String restaurantId, Supplier<Menu> loader) {
+    try {
+      return menus.get(restaurantId, () -> Optional.ofNullable(loader.get())).orElse(null);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  public void invalidate(String restaurantId) {
+    menus.invalidate(restaurantId);
+  }
+
+  public void invalidateAll() {
+    menus.invalidateAll();
+  }
+}
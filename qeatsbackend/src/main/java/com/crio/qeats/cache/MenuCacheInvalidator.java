@@ -0,0 +1,43 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.models.MenuEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+// Drops the cached search results whenever a menu is saved through Spring Data, since item
+// matches may have changed, along with the cached copy of that menu. Deletes only carry the
+// query that was run, so they drop every cached menu.
+@Component
+public class MenuCacheInvalidator extends AbstractMongoEventListener<MenuEntity> {
+
+  @Autowired
+  private SearchResultCache searchResultCache;
+
+  @Autowired
+  private MenuCache menuCache;
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<MenuEntity> event) {
+    searchResultCache.invalidateAll();
+    if (event.getSource().getRestaurantId() == null) {
+      menuCache.invalidateAll();
+    } else {
+      menuCache.invalidate(event.getSource().getRestaurantId());
+    }
+  }
+
+  @Override
+  public void onAfterDelete(AfterDeleteEvent<MenuEntity> event) {
+    searchResultCache.invalidateAll();
+    menuCache.invalidateAll();
+  }
+}
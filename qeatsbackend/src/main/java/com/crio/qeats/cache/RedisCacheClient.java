@@ -0,0 +1,108 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.configs.RedisConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * Runs commands against the Redis pool from {@link RedisConfiguration}.
+ * Every borrowed connection is returned to the pool once the command completes, even if it
+ * throws. Borrowing waits at most {@code qeats.redis.pool.maxWaitMillis} and then fails with a
+ * {@link JedisException}, so callers can fall back to the database instead of hanging on an
+ * exhausted pool.
+ * Pool usage is published as qeats.redis.pool.{active,idle,waiting} gauges, and the time spent
+ * waiting for a connection as the qeats.redis.pool.borrow timer.
+ */
+@Component
+public class RedisCacheClient {
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private Timer borrowTimer;
+
+  private Counter borrowFailures;
+
+  @PostConstruct
+  public void registerMetrics() {
+    if (meterRegistry == null) {
+      return;
+    }
+    registerPoolGauge("qeats.redis.pool.active", "Connections currently borrowed",
+        JedisPool::getNumActive);
+    registerPoolGauge("qeats.redis.pool.idle", "Connections idle in the pool",
+        JedisPool::getNumIdle);
+    registerPoolGauge("qeats.redis.pool.waiting", "Threads waiting for a connection",
+        JedisPool::getNumWaiters);
+    borrowTimer = Timer.builder("qeats.redis.pool.borrow")
+        .description("Time spent waiting for a pooled Redis connection")
+        .register(meterRegistry);
+    borrowFailures = Counter.builder("qeats.redis.pool.borrow.failures")
+        .description("Connections that could not be borrowed in time")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Borrows a connection, applies the command to it and returns it to the pool.
+   * @param command command to run
+   * @return the command's result
+   * @throws JedisException if the cache is unavailable, no connection could be borrowed in
+   *     time, or the command failed
+   */
+  public <T> T execute(Function<Jedis, T> command) {
+    try (Jedis jedis = borrow()) {
+      return command.apply(jedis);
+    }
+  }
+
+  private Jedis borrow() {
+    JedisPool pool = redisConfiguration.getJedisPool();
+    if (pool == null) {
+      throw new JedisConnectionException("Redis cache is not available");
+    }
+    long start = System.nanoTime();
+    try {
+      return pool.getResource();
+    } catch (JedisException e) {
+      if (borrowFailures != null) {
+        borrowFailures.increment();
+      }
+      throw e;
+    } finally {
+      if (borrowTimer != null) {
+        borrowTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private void registerPoolGauge(String name, String description,
+      ToDoubleFunction<JedisPool> value) {
+    Gauge.builder(name, redisConfiguration, configuration -> {
+      JedisPool pool = configuration.getJedisPool();
+      return pool == null ? 0 : value.applyAsDouble(pool);
+    })
+        .description(description)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.exceptions.JedisException;
+
+// Drops the cached cell of every restaurant saved or deleted through Spring Data, and the cached
+// search results, so that the change is visible on the next lookup instead of after the cache
+// entries expire. A restaurant that moved is dropped from the cell it was in as well, whose
+// position is read back before the save; so are the positions a delete query matches. Runs after
+// RestaurantGeoIndexUpdater, since dropped cells are reloaded from the geo index.
+@Component
+@Log4j2
+public class RestaurantCacheInvalidator extends AbstractMongoEventListener<RestaurantEntity> {
+
+  @Autowired
+  private RestaurantCellCache restaurantCellCache;
+
+  @Autowired
+  private SearchResultCache searchResultCache;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  // Cell each restaurant being saved was in before the save, keyed by id.
+  private final Map<String, String> previousCells = new ConcurrentHashMap<>();
+
+  // Cells of the restaurants matched by each delete query being run.
+  private final Map<Document, Set<String>> deletedCells = new ConcurrentHashMap<>();
+
+  @Override
+  public void onBeforeSave(BeforeSaveEvent<RestaurantEntity> event) {
+    String id = event.getSource().getId();
+    if (id == null) {
+      return;
+    }
+    Query query = Query.query(Criteria.where("_id").is(id));
+    query.fields().include("latitude").include("longitude");
+    RestaurantEntity previous =
+        mongoTemplate.findOne(query, RestaurantEntity.class, event.getCollectionName());
+    String previousCell = previous == null ? null : cellOf(previous);
+    if (previousCell != null) {
+      previousCells.put(id, previousCell);
+    }
+  }
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<RestaurantEntity> event) {
+    RestaurantEntity restaurant = event.getSource();
+    searchResultCache.invalidateAll();
+    Set<String> cells = new LinkedHashSet<>();
+    if (restaurant.getId() != null) {
+      String previousCell = previousCells.remove(restaurant.getId());
+      if (previousCell != null) {
+        cells.add(previousCell);
+      }
+    }
+    String cell = cellOf(restaurant);
+    if (cell != null) {
+      cells.add(cell);
+    }
+    invalidateCells(cells);
+  }
+
+  @Override
+  public void onBeforeDelete(BeforeDeleteEvent<RestaurantEntity> event) {
+    BasicQuery query = new BasicQuery(event.getSource(),
+        new Document("latitude", 1).append("longitude", 1));
+    Set<String> cells = new LinkedHashSet<>();
+    for (RestaurantEntity restaurant :
+        mongoTemplate.find(query, RestaurantEntity.class, event.getCollectionName())) {
+      String cell = cellOf(restaurant);
+      if (cell != null) {
+        cells.add(cell);
+      }
+    }
+    deletedCells.put(event.getSource(), cells);
+  }
+
+  @Override
+  public void onAfterDelete(AfterDeleteEvent<RestaurantEntity> event) {
+    searchResultCache.invalidateAll();
+    Set<String> cells = deletedCells.remove(event.getSource());
+    if (cells != null) {
+      invalidateCells(cells);
+    }
+  }
+
+  private void invalidateCells(Set<String> cells) {
+    try {
+      for (String geoHash : cells) {
+        restaurantCellCache.invalidateCell(geoHash);
+      }
+    } catch (JedisException e) {
+      log.warn("Could not invalidate cached restaurant cells {}", cells, e);
+    }
+  }
+
+  private static String cellOf(RestaurantEntity restaurant) {
+    if (restaurant.getLatitude() == null || restaurant.getLongitude() == null) {
+      return null;
+    }
+    return RestaurantCellCache.cellOf(restaurant.getLatitude(), restaurant.getLongitude());
+  }
+}
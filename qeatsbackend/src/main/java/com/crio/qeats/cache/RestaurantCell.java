@@ -0,0 +1,25 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// Restaurants located in one geohash cell, ordered by restaurantId, and when they were loaded
+// from the database.
+@Getter
+@AllArgsConstructor
+@ToString
+public class RestaurantCell {
+
+  private final List<Restaurant> restaurants;
+
+  private final long loadedAtMillis;
+}
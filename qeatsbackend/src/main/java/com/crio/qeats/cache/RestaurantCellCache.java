@@ -0,0 +1,284 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.configs.RedisCacheDestroyedEvent;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Redis cache of restaurants bucketed by geohash cell.
+ * Each cell is a hash at {@code restaurants:cell:<geohash>} mapping restaurantId to the
+ * restaurant encoded by the configured {@link RestaurantCodec}, plus a {@link #LOADED_FIELD}
+ * entry holding the load time so that cells without any restaurant are cached as well. Cells
+ * hold every restaurant located in them regardless of opening hours; callers filter by
+ * distance and time.
+ * Recently read cells are also kept in a bounded in-process cache so hot cells are served
+ * without a Redis round trip. Its hit, miss and eviction counts are published as the
+ * cache.* metrics tagged cache=restaurantCells.
+ * Cells older than the soft TTL are still served but reported {@link #isStale stale} so that
+ * callers can refresh them in the background; Redis drops them after the hard TTL, which is
+ * randomly spread so that cells written together do not expire together.
+ */
+@Component
+@Log4j2
+public class RestaurantCellCache {
+
+  // Precision 5 cells are roughly 4.9km x 4.9km, about the size of a serving radius, so a
+  // lookup reads the user's cell and a handful of neighbours.
+  public static final int CELL_PRECISION = 5;
+
+  public static final String KEY_PREFIX = "restaurants:cell:";
+
+  public static final String LOADED_FIELD = "_loaded";
+
+  public static final Comparator<Restaurant> CELL_ORDER =
+      Comparator.comparing(Restaurant::getRestaurantId);
+
+  @Autowired
+  private RedisCacheClient redisCacheClient;
+
+  @Autowired
+  private RestaurantCodec restaurantCodec;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private long localMaximumSize = 2000;
+
+  private long localExpireAfterWriteSeconds = 30;
+
+  private int ttlSeconds = RedisConfiguration.REDIS_ENTRY_EXPIRY_IN_SECONDS;
+
+  private int ttlJitterSeconds = 600;
+
+  private long softTtlSeconds = 900;
+
+  // In-process copy of recently used cells, in front of Redis. Kept short lived because other
+  // instances cannot invalidate it.
+  private Cache<String, RestaurantCell> localCells;
+
+  @Value("${qeats.cache.local.maximumSize:2000}")
+  public void setLocalMaximumSize(long localMaximumSize) {
+    this.localMaximumSize = localMaximumSize;
+  }
+
+  @Value("${qeats.cache.local.expireAfterWriteSeconds:30}")
+  public void setLocalExpireAfterWriteSeconds(long localExpireAfterWriteSeconds) {
+    this.localExpireAfterWriteSeconds = localExpireAfterWriteSeconds;
+  }
+
+  @Value("${qeats.cache.cell.ttlSeconds:3600}")
+  public void setTtlSeconds(int ttlSeconds) {
+    this.ttlSeconds = ttlSeconds;
+  }
+
+  @Value("${qeats.cache.cell.ttlJitterSeconds:600}")
+  public void setTtlJitterSeconds(int ttlJitterSeconds) {
+    this.ttlJitterSeconds = ttlJitterSeconds;
+  }
+
+  @Value("${qeats.cache.cell.softTtlSeconds:900}")
+  public void setSoftTtlSeconds(long softTtlSeconds) {
+    this.softTtlSeconds = softTtlSeconds;
+  }
+
+  @PostConstruct
+  public void initLocalCache() {
+    localCells = CacheBuilder.newBuilder()
+        .maximumSize(localMaximumSize)
+        .expireAfterWrite(localExpireAfterWriteSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    if (meterRegistry != null) {
+      GuavaCacheMetrics.monitor(meterRegistry, localCells, "restaurantCells");
+    }
+  }
+
+  public static String key(String geoHash) {
+    return KEY_PREFIX + geoHash;
+  }
+
+  /**
+   * Reads the given cells from the local cache, and the rest from Redis in a single pipelined
+   * round trip.
+   * The returned lists and restaurants are shared with the local cache: copy a restaurant
+   * before modifying it.
+   * @param geoHashes cells to read
+   * @return every cached cell, stale or not; cells that are not cached, or cannot be decoded,
+   *     are left out
+   */
+  public Map<String, RestaurantCell> getCells(Collection<String> geoHashes) {
+    Map<String, RestaurantCell> cells = new HashMap<>(localCells.getAllPresent(geoHashes));
+    if (cells.size() == geoHashes.size()) {
+      return cells;
+    }
+
+    Map<String, Response<Map<byte[], byte[]>>> responses = new LinkedHashMap<>();
+    redisCacheClient.execute(jedis -> {
+      Pipeline pipeline = jedis.pipelined();
+      for (String geoHash : geoHashes) {
+        if (!cells.containsKey(geoHash)) {
+          responses.put(geoHash, pipeline.hgetAll(SafeEncoder.encode(key(geoHash))));
+        }
+      }
+      pipeline.sync();
+      return null;
+    });
+
+    for (Map.Entry<String, Response<Map<byte[], byte[]>>> response : responses.entrySet()) {
+      RestaurantCell cell = decode(response.getKey(), response.getValue().get());
+      if (cell != null) {
+        cells.put(response.getKey(), cell);
+        localCells.put(response.getKey(), cell);
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Replaces the given cells in Redis. Empty cells are stored too.
+   * All cells are written in one MULTI/EXEC transaction sent as a single pipelined round trip,
+   * so readers never see a cell that was deleted but not refilled yet.
+   * @param restaurantsByCell restaurants located in each cell, keyed by geohash
+   * @return the cells as stored
+   */
+  public Map<String, RestaurantCell> putCells(Map<String, List<Restaurant>> restaurantsByCell) {
+    long loadedAtMillis = System.currentTimeMillis();
+    byte[] loadedAt = SafeEncoder.encode(String.valueOf(loadedAtMillis));
+    Map<byte[], Map<byte[], byte[]>> encodedCells = new HashMap<>();
+    Map<String, RestaurantCell> cells = new HashMap<>();
+    for (Map.Entry<String, List<Restaurant>> cell : restaurantsByCell.entrySet()) {
+      List<Restaurant> restaurants = new ArrayList<>(cell.getValue());
+      restaurants.sort(CELL_ORDER);
+      cells.put(cell.getKey(),
+          new RestaurantCell(Collections.unmodifiableList(restaurants), loadedAtMillis));
+
+      Map<byte[], byte[]> fields = encode(cell.getKey(), restaurants);
+      if (fields != null) {
+        fields.put(SafeEncoder.encode(LOADED_FIELD), loadedAt);
+        encodedCells.put(SafeEncoder.encode(key(cell.getKey())), fields);
+      }
+    }
+    if (encodedCells.isEmpty()) {
+      return cells;
+    }
+
+    redisCacheClient.execute(jedis -> {
+      Pipeline pipeline = jedis.pipelined();
+      pipeline.multi();
+      for (Map.Entry<byte[], Map<byte[], byte[]>> cell : encodedCells.entrySet()) {
+        pipeline.del(cell.getKey());
+        pipeline.hmset(cell.getKey(), cell.getValue());
+        pipeline.expire(cell.getKey(), jitteredTtlSeconds());
+      }
+      pipeline.exec();
+      pipeline.sync();
+      return null;
+    });
+    localCells.putAll(cells);
+    return cells;
+  }
+
+  // True once a cell is older than the soft TTL and should be reloaded.
+  public boolean isStale(RestaurantCell cell) {
+    return System.currentTimeMillis() - cell.getLoadedAtMillis()
+        > TimeUnit.SECONDS.toMillis(softTtlSeconds);
+  }
+
+  // Geohash of the cell containing the given position.
+  public static String cellOf(double latitude, double longitude) {
+    return GeoHash.geoHashStringWithCharacterPrecision(latitude, longitude, CELL_PRECISION);
+  }
+
+  /**
+   * Drops the cell, locally and in Redis, so that the next lookup reloads it from the database.
+   */
+  public void invalidateCell(String geoHash) {
+    localCells.invalidate(geoHash);
+    redisCacheClient.execute(jedis -> jedis.del(key(geoHash)));
+  }
+
+  // Drops the local copies only, e.g. after Redis has been flushed.
+  @EventListener(RedisCacheDestroyedEvent.class)
+  public void invalidateLocal() {
+    localCells.invalidateAll();
+  }
+
+  private int jitteredTtlSeconds() {
+    if (ttlJitterSeconds <= 0) {
+      return ttlSeconds;
+    }
+    return Math.max(1,
+        ttlSeconds + ThreadLocalRandom.current().nextInt(-ttlJitterSeconds, ttlJitterSeconds + 1));
+  }
+
+  private Map<byte[], byte[]> encode(String geoHash, List<Restaurant> restaurants) {
+    Map<byte[], byte[]> fields = new HashMap<>();
+    try {
+      for (Restaurant restaurant : restaurants) {
+        fields.put(SafeEncoder.encode(restaurant.getRestaurantId()),
+            restaurantCodec.encode(restaurant));
+      }
+    } catch (IOException e) {
+      log.warn("Not caching cell {}", geoHash, e);
+      return null;
+    }
+    return fields;
+  }
+
+  // Returns null for cells that are not cached or cannot be decoded.
+  private RestaurantCell decode(String geoHash, Map<byte[], byte[]> fields) {
+    if (fields.isEmpty()) {
+      return null;
+    }
+    Long loadedAtMillis = null;
+    List<Restaurant> restaurants = new ArrayList<>(fields.size() - 1);
+    try {
+      for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+        if (LOADED_FIELD.equals(SafeEncoder.encode(field.getKey()))) {
+          loadedAtMillis = Long.parseLong(SafeEncoder.encode(field.getValue()));
+        } else {
+          restaurants.add(restaurantCodec.decode(field.getValue()));
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      log.warn("Ignoring undecodable cache cell {}", geoHash, e);
+      return null;
+    }
+    if (loadedAtMillis == null) {
+      return null;
+    }
+    restaurants.sort(CELL_ORDER);
+    return new RestaurantCell(Collections.unmodifiableList(restaurants), loadedAtMillis);
+  }
+}
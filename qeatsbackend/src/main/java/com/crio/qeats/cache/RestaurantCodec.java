@@ -0,0 +1,25 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+
+/**
+ * Encodes restaurants stored in the Redis cache.
+ * Implementations must be thread safe. Select one with {@code qeats.cache.codec}.
+ */
+public interface RestaurantCodec {
+
+  byte[] encode(Restaurant restaurant) throws IOException;
+
+  /**
+   * Decodes a payload written by {@link #encode(Restaurant)}.
+   * @throws IOException if the payload was not written by this codec or is corrupt
+   */
+  Restaurant decode(byte[] payload) throws IOException;
+}
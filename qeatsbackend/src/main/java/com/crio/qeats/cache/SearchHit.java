@@ -0,0 +1,23 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// A restaurant matching a search, with the relevance score of the sources that matched it.
+@Getter
+@AllArgsConstructor
+@ToString
+public class SearchHit {
+
+  private final Restaurant restaurant;
+
+  private final int score;
+}
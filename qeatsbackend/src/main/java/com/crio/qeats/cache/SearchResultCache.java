@@ -0,0 +1,90 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.utils.SearchTerms;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process cache of search matches, keyed by the normalized search terms, the geohash cell
+ * of the user and the serving radius.
+ * An entry holds every restaurant that matches the query and lies within the serving radius
+ * of some point of the cell, at any time of day, so one entry serves every user in the cell:
+ * callers still apply the exact distance and opening hours checks. Concurrent misses on the
+ * same key wait for a single load. Entries are dropped after a short TTL and whenever a
+ * restaurant or a menu is saved. Hit and miss counts are published as the cache.* metrics
+ * tagged cache=searchResults.
+ */
+@Component
+public class SearchResultCache {
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private long maximumSize = 10000;
+
+  private long expireAfterWriteSeconds = 60;
+
+  private Cache<String, List<SearchHit>> results;
+
+  @Value("${qeats.cache.search.maximumSize:10000}")
+  public void setMaximumSize(long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  @Value("${qeats.cache.search.expireAfterWriteSeconds:60}")
+  public void setExpireAfterWriteSeconds(long expireAfterWriteSeconds) {
+    this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+  }
+
+  @PostConstruct
+  public void initCache() {
+    results = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    if (meterRegistry != null) {
+      GuavaCacheMetrics.monitor(meterRegistry, results, "searchResults");
+    }
+  }
+
+  public static String key(String searchString, String geoHash, double servingRadiusInKms) {
+    return SearchTerms.normalize(searchString) + '|' + geoHash + '|' + servingRadiusInKms;
+  }
+
+  /**
+   * Returns the cached matches for the key, loading them on a miss.
+   * The returned list and restaurants are shared: copy a restaurant before modifying it.
+   */
+  public List<SearchHit> get(String key, Supplier<List<SearchHit>> loader) {
+    try {
+      return results.get(key, loader::get);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  public void invalidateAll() {
+    results.invalidateAll();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same keys.
+ * The first caller to ask for a key that is not being loaded runs the loader for it; callers
+ * asking for the same key while that load is in flight wait for its result instead of running
+ * their own. Once the load completes the key is released, so later callers load again.
+ * Each caller loads every key it claims with a single loader call, and only then waits for the
+ * keys claimed by others, so callers never wait on each other in a cycle.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the value of every key, loading the ones no other caller is loading right now.
+   * @param keys keys to load
+   * @param loader loads the values of the given keys; keys missing from its result map to null
+   * @return values of all the keys
+   * @throws RuntimeException thrown by the loader, in this caller or in the caller whose load
+   *     this caller waited for
+   */
+  public Map<K, V> executeAll(Collection<K> keys, Function<Collection<K>, Map<K, V>> loader) {
+    Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+    Map<K, CompletableFuture<V>> awaited = new LinkedHashMap<>();
+    for (K key : keys) {
+      CompletableFuture<V> future = new CompletableFuture<>();
+      CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+      if (existing == null) {
+        owned.put(key, future);
+      } else {
+        awaited.put(key, existing);
+      }
+    }
+
+    Map<K, V> values = new LinkedHashMap<>();
+    if (!owned.isEmpty()) {
+      try {
+        Map<K, V> loaded = loader.apply(owned.keySet());
+        owned.forEach((key, future) -> {
+          values.put(key, loaded.get(key));
+          future.complete(loaded.get(key));
+        });
+      } catch (RuntimeException | Error e) {
+        owned.values().forEach(future -> future.completeExceptionally(e));
+        throw e;
+      } finally {
+        owned.forEach(inFlight::remove);
+      }
+    }
+
+    for (Map.Entry<K, CompletableFuture<V>> entry : awaited.entrySet()) {
+      values.put(entry.getKey(), join(entry.getValue()));
+    }
+    return values;
+  }
+
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  private static <V> V join(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
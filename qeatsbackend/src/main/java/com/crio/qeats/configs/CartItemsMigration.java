@@ -0,0 +1,97 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.CartEntity;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rewrites the carts stored before {@link CartEntity} kept one line per item, whose `items`
+ * field is an array holding every item once per unit, into the `items` sub-document of lines
+ * keyed by itemId. Cart updates address lines by path, and fail on the array.
+ * Runs when the context is refreshed, before the web server accepts requests.
+ */
+@Component
+@Log4j2
+public class CartItemsMigration {
+
+  private static final int BATCH_SIZE = 1000;
+
+  // BSON type of arrays, matched by $type since MongoDB 3.6.
+  private static final int ARRAY = 4;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @EventListener(ContextRefreshedEvent.class)
+  public void migrateCartItems() {
+    Query query = new Query(Criteria.where("items").type(ARRAY));
+    query.fields().include("items");
+    query.limit(BATCH_SIZE);
+
+    int migrated = 0;
+    String collection = mongoTemplate.getCollectionName(CartEntity.class);
+    List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+    while (!batch.isEmpty()) {
+      BulkOperations bulkOperations =
+          mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CartEntity.class);
+      for (Document cart : batch) {
+        // Only while still an array, so that a cart changed meanwhile is left as it is.
+        bulkOperations.updateOne(
+            new Query(Criteria.where("_id").is(cart.get("_id")).and("items").type(ARRAY)),
+            new Update().set("items", toCartEntity(cart).getLines()).unset("total"));
+      }
+      bulkOperations.execute();
+      migrated += batch.size();
+      batch = mongoTemplate.find(query, Document.class, collection);
+    }
+    if (migrated > 0) {
+      log.info("Migrated the items of {} carts to one line per item", migrated);
+    }
+  }
+
+  // Cart holding the items of the given array-shaped cart document. Entries without an itemId
+  // cannot be addressed and are dropped.
+  static CartEntity toCartEntity(Document cart) {
+    List<Item> items = new ArrayList<>();
+    for (Object entry : cart.get("items", List.class)) {
+      if (!(entry instanceof Document) || ((Document) entry).getString("itemId") == null) {
+        continue;
+      }
+      Document document = (Document) entry;
+      Item item = new Item();
+      item.setItemId(document.getString("itemId"));
+      item.setName(document.getString("name"));
+      item.setImageUrl(document.getString("imageUrl"));
+      List<String> attributes = new ArrayList<>();
+      List<?> storedAttributes = document.get("attributes", List.class);
+      if (storedAttributes != null) {
+        storedAttributes.forEach(attribute -> attributes.add(String.valueOf(attribute)));
+      }
+      item.setAttributes(attributes);
+      Number price = document.get("price", Number.class);
+      item.setPrice(price == null ? 0 : price.intValue());
+      items.add(item);
+    }
+    CartEntity cartEntity = new CartEntity();
+    cartEntity.setItems(items);
+    return cartEntity;
+  }
+}
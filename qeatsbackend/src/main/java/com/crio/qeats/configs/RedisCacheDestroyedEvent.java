@@ -0,0 +1,12 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+// Published once Redis has been flushed through RedisConfiguration#destroyCache, so that the
+// in-process copies of Redis entries can be dropped as well.
+public class RedisCacheDestroyedEvent {
+}
@@ -3,7 +3,9 @@ package com.crio.qeats.configs;
 
 import java.time.Duration;
 import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
@@ -30,8 +32,16 @@ public class RedisConfiguration {
   public static final String ROUTING_KEY = "qeats.postorder";
 
   private int redisPort;
-  
-  private JedisPool jedisPool;
+
+  // Longest a request waits for a pooled connection before giving up on the cache.
+  private long maxWaitMillis = 200;
+
+  private int timeoutMillis = 2000;
+
+  private volatile JedisPool jedisPool;
+
+  @Autowired(required = false)
+  private ApplicationEventPublisher eventPublisher;
 
   
   @Value("${spring.redis.port}")
@@ -40,6 +50,16 @@ public class RedisConfiguration {
     redisPort = port;
   }
 
+  @Value("${qeats.redis.pool.maxWaitMillis:200}")
+  public void setMaxWaitMillis(long maxWaitMillis) {
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  @Value("${qeats.redis.timeoutMillis:2000}")
+  public void setTimeoutMillis(int timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
   /**
    * Initializes the cache to be used in the code. TIP: Look in the direction of
    * `JedisPool`.
@@ -50,15 +70,18 @@ public class RedisConfiguration {
     jedisPoolConfig.setMaxTotal(128);
     jedisPoolConfig.setMaxIdle(128);
     jedisPoolConfig.setMinIdle(16);
-    jedisPoolConfig.setTestOnBorrow(true);
-    jedisPoolConfig.setTestOnReturn(true);
+    // Idle connections are validated by the evictor; testing on borrow and return would add a
+    // PING round trip to every cache call.
+    jedisPoolConfig.setTestOnBorrow(false);
+    jedisPoolConfig.setTestOnReturn(false);
     jedisPoolConfig.setTestWhileIdle(true);
     jedisPoolConfig.setMinEvictableIdleTimeMillis(Duration.ofSeconds(60).toMillis());
     jedisPoolConfig.setTimeBetweenEvictionRunsMillis(Duration.ofSeconds(30).toMillis());
     jedisPoolConfig.setNumTestsPerEvictionRun(3);
     jedisPoolConfig.setBlockWhenExhausted(true);
+    jedisPoolConfig.setMaxWaitMillis(maxWaitMillis);
     
-    jedisPool = new JedisPool(jedisPoolConfig, redisHost, redisPort, REDIS_ENTRY_EXPIRY_IN_SECONDS);
+    jedisPool = new JedisPool(jedisPoolConfig, redisHost, redisPort, timeoutMillis);
   }
 
   /**
@@ -80,10 +103,16 @@ public class RedisConfiguration {
    * tests.
    */
   public void destroyCache() {
-    if (jedisPool != null) {
-      this.jedisPool.getResource().flushAll();
-      this.jedisPool.destroy();
+    JedisPool pool = this.jedisPool;
+    if (pool != null) {
       this.jedisPool = null;
+      try (Jedis jedis = pool.getResource()) {
+        jedis.flushAll();
+      }
+      pool.destroy();
+      if (eventPublisher != null) {
+        eventPublisher.publishEvent(new RedisCacheDestroyedEvent());
+      }
     }
   }
 
@@ -0,0 +1,88 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.List;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeospatialIndex;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prepares the `restaurants` collection for geo queries on startup.
+ *   - Backfills the GeoJSON `location` field from latitude/longitude for documents that were
+ *     loaded without it. Restaurants saved later get it from {@link RestaurantLocationListener}.
+ *   - Creates the 2dsphere index on `location`.
+ *   - Creates the latitude/longitude index used to load geohash cells into the cache.
+ */
+@Component
+@Log4j2
+public class RestaurantLocationInitializer {
+
+  private static final int BATCH_SIZE = 1000;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  private boolean geoQueryEnabled = true;
+
+  @Value("${qeats.mongo.geoQuery.enabled:true}")
+  public void setGeoQueryEnabled(boolean geoQueryEnabled) {
+    this.geoQueryEnabled = geoQueryEnabled;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void initRestaurantLocations() {
+    if (!geoQueryEnabled) {
+      return;
+    }
+    int backfilled = backfillLocations();
+    mongoTemplate.indexOps(RestaurantEntity.class)
+        .ensureIndex(new GeospatialIndex("location").typed(GeoSpatialIndexType.GEO_2DSPHERE));
+    mongoTemplate.indexOps(RestaurantEntity.class)
+        .ensureIndex(new Index().on("latitude", Direction.ASC).on("longitude", Direction.ASC));
+    log.info("Ensured geo indexes on restaurants, backfilled {} documents",
+        backfilled);
+  }
+
+  private int backfillLocations() {
+    Query query = new Query(Criteria.where("location").exists(false)
+        .and("latitude").ne(null).and("longitude").ne(null));
+    query.fields().include("latitude").include("longitude");
+    query.limit(BATCH_SIZE);
+
+    int backfilled = 0;
+    List<RestaurantEntity> batch = mongoTemplate.find(query, RestaurantEntity.class);
+    while (!batch.isEmpty()) {
+      BulkOperations bulkOperations =
+          mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RestaurantEntity.class);
+      for (RestaurantEntity restaurant : batch) {
+        bulkOperations.updateOne(
+            new Query(Criteria.where("_id").is(restaurant.getId())),
+            Update.update("location",
+                new GeoJsonPoint(restaurant.getLongitude(), restaurant.getLatitude())));
+      }
+      bulkOperations.execute();
+      backfilled += batch.size();
+      batch = mongoTemplate.find(query, RestaurantEntity.class);
+    }
+    return backfilled;
+  }
+}
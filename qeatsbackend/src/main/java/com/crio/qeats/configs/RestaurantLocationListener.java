@@ -0,0 +1,29 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.models.RestaurantEntity;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.stereotype.Component;
+
+// Sets the GeoJSON location of every restaurant written through Spring Data from its
+// latitude/longitude, so that restaurants added or moved after startup are found by the geo
+// queries. RestaurantLocationInitializer backfills the documents written some other way.
+@Component
+public class RestaurantLocationListener extends AbstractMongoEventListener<RestaurantEntity> {
+
+  @Override
+  public void onBeforeConvert(BeforeConvertEvent<RestaurantEntity> event) {
+    RestaurantEntity restaurant = event.getSource();
+    if (restaurant.getLatitude() != null && restaurant.getLongitude() != null) {
+      restaurant.setLocation(
+          new GeoJsonPoint(restaurant.getLongitude(), restaurant.getLatitude()));
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.executors.VirtualThreads;
+import java.util.concurrent.ExecutorService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// With qeats.threads.virtual.enabled=true, Tomcat handles every request on its own virtual
+// thread instead of on its bounded worker pool, so requests blocked on Mongo or Redis no longer
+// hold a worker. The number of requests in flight is then bounded by server.tomcat.max-connections
+// and by the Mongo and Redis connection pools. Ignored, with a warning, on JDKs without virtual
+// threads.
+@Configuration
+@ConditionalOnProperty(name = "qeats.threads.virtual.enabled", havingValue = "true")
+@Log4j2
+public class VirtualThreadsConfiguration {
+
+  @Bean
+  public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadsCustomizer() {
+    return factory -> {
+      if (!VirtualThreads.isSupported()) {
+        log.warn("qeats.threads.virtual.enabled is set but this JDK has no virtual threads, "
+            + "keeping the Tomcat worker pool");
+        return;
+      }
+      factory.addConnectorCustomizers(connector -> {
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+        connector.getProtocolHandler().setExecutor(executor);
+        log.info("Tomcat connector {} handles requests on virtual threads", connector.getPort());
+      });
+    };
+  }
+}
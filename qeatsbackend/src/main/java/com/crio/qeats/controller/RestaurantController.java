@@ -30,12 +30,14 @@ import com.crio.qeats.services.RestaurantService;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.validation.Valid;
 
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -47,6 +49,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 // TODO: CRIO_TASK_MODULE_RESTAURANTSAPI
 // Implement Controller using Spring annotations.
@@ -60,6 +63,9 @@ public class RestaurantController {
   public static final String RESTAURANT_API_ENDPOINT = "/qeats/v1";
   public static final String RESTAURANTS_API = "/restaurants";
   public static final String MENU_API = "/menu";
+  public static final String RESTAURANTS_ASYNC_API = "/async/restaurants";
+  public static final String RESTAURANTS_STREAM_API = "/restaurants/stream";
+  public static final String MENU_ASYNC_API = "/async/menu";
   public static final String CART_API = "/cart";
   public static final String CART_ITEM_API = "/cart/item";
   public static final String CART_CLEAR_API = "/cart/clear";
@@ -81,11 +87,7 @@ public class RestaurantController {
     log.info("getRestaurants called with {}", getRestaurantsRequest);
     GetRestaurantsResponse getRestaurantsResponse;
     String searchFor = getRestaurantsRequest.getSearchFor();
-    if (getRestaurantsRequest.getLatitude() != null 
-        && getRestaurantsRequest.getLongitude() != null
-        && getRestaurantsRequest.getLatitude() >= - 90 && getRestaurantsRequest.getLatitude() <= 90
-        && getRestaurantsRequest.getLongitude() >= - 180 
-        && getRestaurantsRequest.getLongitude() <= 180) {
+    if (isValidLocation(getRestaurantsRequest)) {
       if (!(StringUtils.isEmpty(searchFor))) {
         getRestaurantsResponse =
 restaurantService.findRestaurantsBySearchQuery(getRestaurantsRequest,
@@ -96,23 +98,76 @@ LocalTime.now());
         restaurantService.findAllRestaurantsCloseBy(getRestaurantsRequest,
 LocalTime.now());
       }
-      if (getRestaurantsResponse != null) {
-        List<Restaurant> restaurantList =  getRestaurantsResponse.getRestaurants();
-        for (Restaurant restaurants : restaurantList) {
-          restaurants.setName(restaurants.getName().replace("é",
-                "?"));
-        }
-        getRestaurantsResponse.setRestaurants(restaurantList);
-        return ResponseEntity.ok().body(getRestaurantsResponse);
-      } else {
-        return ResponseEntity.ok().body(new GetRestaurantsResponse(new ArrayList<>()));
-      }
+      return toRestaurantsResponseEntity(getRestaurantsResponse);
     } else {
       return ResponseEntity.badRequest().body(null);
     }
   
   }
 
+  // Same contract as getRestaurants, but the request thread is released while the restaurants
+  // are looked up: the response is written once the returned future completes. Searches use
+  // the multi-threaded search, so they may come back partial.
+  @GetMapping(RESTAURANTS_ASYNC_API)
+  public CompletableFuture<ResponseEntity<GetRestaurantsResponse>> getRestaurantsAsync(
+      GetRestaurantsRequest getRestaurantsRequest) {
+    log.info("getRestaurantsAsync called with {}", getRestaurantsRequest);
+    if (!isValidLocation(getRestaurantsRequest)) {
+      return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(null));
+    }
+    CompletableFuture<GetRestaurantsResponse> getRestaurantsResponse =
+        StringUtils.isEmpty(getRestaurantsRequest.getSearchFor())
+            ? restaurantService.findAllRestaurantsCloseByAsync(getRestaurantsRequest,
+                LocalTime.now())
+            : restaurantService.findRestaurantsBySearchQueryAsync(getRestaurantsRequest,
+                LocalTime.now());
+    return getRestaurantsResponse.thenApply(this::toRestaurantsResponseEntity);
+  }
+
+  // Same restaurants as getRestaurants, written as newline delimited JSON while they are found
+  // instead of collected into a single response, which keeps wide searches from holding the
+  // whole list in memory.
+  @GetMapping(value = RESTAURANTS_STREAM_API, produces = RestaurantStreamWriter.MEDIA_TYPE)
+  public ResponseEntity<StreamingResponseBody> streamRestaurants(
+      GetRestaurantsRequest getRestaurantsRequest) {
+    log.info("streamRestaurants called with {}", getRestaurantsRequest);
+    if (!isValidLocation(getRestaurantsRequest)) {
+      return ResponseEntity.badRequest().build();
+    }
+    LocalTime currentTime = LocalTime.now();
+    StreamingResponseBody body = outputStream -> {
+      try (RestaurantStreamWriter writer = new RestaurantStreamWriter(outputStream)) {
+        restaurantService.streamRestaurants(getRestaurantsRequest, currentTime, writer::write);
+      }
+    };
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(RestaurantStreamWriter.MEDIA_TYPE))
+        .body(body);
+  }
+
+  private boolean isValidLocation(GetRestaurantsRequest getRestaurantsRequest) {
+    return getRestaurantsRequest.getLatitude() != null
+        && getRestaurantsRequest.getLongitude() != null
+        && getRestaurantsRequest.getLatitude() >= - 90 && getRestaurantsRequest.getLatitude() <= 90
+        && getRestaurantsRequest.getLongitude() >= - 180
+        && getRestaurantsRequest.getLongitude() <= 180;
+  }
+
+  private ResponseEntity<GetRestaurantsResponse> toRestaurantsResponseEntity(
+      GetRestaurantsResponse getRestaurantsResponse) {
+    if (getRestaurantsResponse != null) {
+      List<Restaurant> restaurantList =  getRestaurantsResponse.getRestaurants();
+      for (Restaurant restaurants : restaurantList) {
+        restaurants.setName(restaurants.getName().replace("é",
+              "?"));
+      }
+      getRestaurantsResponse.setRestaurants(restaurantList);
+      return ResponseEntity.ok().body(getRestaurantsResponse);
+    } else {
+      return ResponseEntity.ok().body(new GetRestaurantsResponse(new ArrayList<>()));
+    }
+  }
+
   // Implement GET Cart for the given userId.
   // API URI: /qeats/v1/cart?userId=arun
   // Method: GET
@@ -153,6 +208,15 @@ LocalTime.now());
     return ResponseEntity.ok().body(getMenuResponse);
   }
 
+  @GetMapping(MENU_ASYNC_API)
+  public CompletableFuture<ResponseEntity<GetMenuResponse>> getMenuAsync(
+      @RequestParam("restaurantId") String restaurantId) {
+    return menuService.findMenuAsync(restaurantId).thenApply(getMenuResponse -> {
+      log.info("getMenuAsync returned with {}", getMenuResponse);
+      return ResponseEntity.ok().body(getMenuResponse);
+    });
+  }
+
   // Implement add item to cart
   // API URI: /qeats/v1/cart/item
   // Method: POST
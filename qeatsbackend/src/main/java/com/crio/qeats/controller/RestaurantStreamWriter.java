@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.controller;
+
+import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes restaurants as newline delimited JSON, one restaurant per line, in the same layout as
+ * in {@link com.crio.qeats.exchanges.GetRestaurantsResponse}.
+ * Names are sanitized while they are written, like getRestaurants does, without modifying the
+ * restaurants, so restaurants shared with the caches can be written as they are.
+ */
+class RestaurantStreamWriter implements Closeable {
+
+  public static final String MEDIA_TYPE = "application/x-ndjson";
+
+  private static final ObjectWriter RESTAURANT_WRITER = new ObjectMapper()
+      .addMixIn(Restaurant.class, SanitizedRestaurant.class)
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      .writerFor(Restaurant.class)
+      .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+  private final JsonGenerator generator;
+
+  private boolean flushed;
+
+  RestaurantStreamWriter(OutputStream outputStream) throws IOException {
+    generator = RESTAURANT_WRITER.getFactory().createGenerator(outputStream);
+    // Each restaurant ends its own line instead of being separated by spaces.
+    generator.setRootValueSeparator(null);
+  }
+
+  /**
+   * Writes one restaurant. The first one is flushed right away so that clients start receiving
+   * restaurants early; later ones are flushed as the buffer fills up.
+   * @throws UncheckedIOException if the client went away
+   */
+  void write(Restaurant restaurant) {
+    try {
+      RESTAURANT_WRITER.writeValue(generator, restaurant);
+      generator.writeRaw('\n');
+      if (!flushed) {
+        generator.flush();
+        flushed = true;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    generator.close();
+  }
+
+  static String sanitizeName(String name) {
+    return name.replace("\u00e9", "?");
+  }
+
+  private abstract static class SanitizedRestaurant {
+
+    @JsonSerialize(using = SanitizedNameSerializer.class)
+    abstract String getName();
+  }
+
+  private static final class SanitizedNameSerializer extends JsonSerializer<String> {
+
+    @Override
+    public void serialize(String name, JsonGenerator generator, SerializerProvider serializers)
+        throws IOException {
+      generator.writeString(sanitizeName(name));
+    }
+  }
+}
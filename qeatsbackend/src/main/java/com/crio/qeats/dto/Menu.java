@@ -8,15 +8,22 @@
 
 package com.crio.qeats.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.validation.constraints.NotNull;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class Menu {
 
@@ -26,4 +33,39 @@ public class Menu {
   @NotNull
   private List<Item> items = new ArrayList();
 
+  // Items keyed by itemId, built on the first lookup and dropped when the items are replaced.
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private volatile Map<String, Item> itemsById;
+
+  public Menu(String restaurantId, List<Item> items) {
+    this.restaurantId = restaurantId;
+    this.items = items;
+  }
+
+  public void setItems(List<Item> items) {
+    this.items = items;
+    this.itemsById = null;
+  }
+
+  /**
+   * Finds the item with the given itemId in constant time.
+   * @return the item, or null if the menu has no such item
+   */
+  public Item findItem(String itemId) {
+    Map<String, Item> index = itemsById;
+    if (index == null) {
+      index = new HashMap<>();
+      if (items != null) {
+        for (Item item : items) {
+          index.putIfAbsent(item.getItemId(), item);
+        }
+      }
+      itemsById = index;
+    }
+    return index.get(itemId);
+  }
 }
@@ -7,9 +7,11 @@
 
 package com.crio.qeats.dto;
 
+import com.crio.qeats.utils.OpeningHours;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -19,11 +21,15 @@ import java.util.List;
 
 import javax.validation.constraints.NotNull;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import lombok.ToString;
 
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 // Java class that maps to Mongo collection.
@@ -35,6 +41,11 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @JsonIgnoreProperties({"id"})
 public class Restaurant {
 
+  private static final int UNPARSED = Integer.MIN_VALUE;
+
+  // ObjectWriter is immutable and thread safe, so one instance serves every call.
+  private static final ObjectWriter JSON_WRITER = new ObjectMapper().writerFor(Restaurant.class);
+
   private String id;
 
   @NotNull
@@ -64,6 +75,21 @@ public class Restaurant {
   @NotNull
   private List<String> attributes = new ArrayList<>();
 
+  // Minute-of-day copies of opensAt/closesAt, parsed once on first use.
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private int opensAtMinute = UNPARSED;
+
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private int closesAtMinute = UNPARSED;
+
   public void setRestaurant(
       String id,
       String restaurantId,
@@ -86,14 +112,36 @@ public class Restaurant {
     this.longitude = longitude;
     this.opensAt = opensAt;
     this.closesAt = closesAt;
+    this.opensAtMinute = UNPARSED;
+    this.closesAtMinute = UNPARSED;
+  }
 
+  public void setOpensAt(String opensAt) {
+    this.opensAt = opensAt;
+    this.opensAtMinute = UNPARSED;
+  }
+
+  public void setClosesAt(String closesAt) {
+    this.closesAt = closesAt;
+    this.closesAtMinute = UNPARSED;
+  }
 
+  /**
+   * Checks whether the restaurant is open at the given minute of day.
+   * @see OpeningHours#isOpen(int, int, int)
+   */
+  public boolean isOpenAt(int minuteOfDay) {
+    if (opensAtMinute == UNPARSED) {
+      opensAtMinute = OpeningHours.toMinuteOfDay(opensAt);
+    }
+    if (closesAtMinute == UNPARSED) {
+      closesAtMinute = OpeningHours.toMinuteOfDay(closesAt);
+    }
+    return OpeningHours.isOpen(opensAtMinute, closesAtMinute, minuteOfDay);
   }
 
   public String serializeToJson() throws JsonProcessingException {
-    ObjectMapper mapper = new ObjectMapper();
-    String jsonString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(this);
-    return jsonString;
+    return JSON_WRITER.writeValueAsString(this);
   }
 
 }
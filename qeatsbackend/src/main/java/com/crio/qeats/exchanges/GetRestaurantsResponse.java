@@ -7,6 +7,7 @@
 package com.crio.qeats.exchanges;
 
 import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -21,5 +22,14 @@ public class GetRestaurantsResponse {
 
   List<Restaurant> restaurants;
 
+  // True when some search sources missed the search deadline and the restaurants they would
+  // have found are missing. Left out of the JSON when false.
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  boolean partial;
+
+  public GetRestaurantsResponse(List<Restaurant> restaurants) {
+    this.restaurants = restaurants;
+  }
+
 }
 
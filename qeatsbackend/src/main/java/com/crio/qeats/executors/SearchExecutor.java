@@ -0,0 +1,271 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded thread pool running the legs of the multi-threaded search and the async endpoints.
+ * A thread pool only adds threads beyond its core size once its queue is full, so the core size
+ * is the maximum by default: legs queue only once that many are running.
+ * When all threads are busy and the queue is full, new legs are rejected
+ * ({@code qeats.search.executor.rejectionPolicy=abort}) or run on the submitting thread
+ * ({@code caller-runs}).
+ * Per leg, the time spent queued and running are published as the qeats.search.leg.queue and
+ * qeats.search.leg.execution timers and rejections as the qeats.search.leg.rejections counter,
+ * all tagged with the leg name; pool usage is published as the executor.* metrics tagged
+ * name=searchExecutor.
+ * With {@code qeats.threads.virtual.enabled=true}, on a JDK that has virtual threads, every leg
+ * runs on its own virtual thread instead: legs are then never queued nor rejected, and how many
+ * run at once is bounded by the Mongo and Redis connection pools they block on.
+ */
+@Component
+@Log4j2
+public class SearchExecutor {
+
+  public static final String ABORT = "abort";
+
+  public static final String CALLER_RUNS = "caller-runs";
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private int corePoolSize = 32;
+
+  private int maxPoolSize = 32;
+
+  private int queueCapacity = 256;
+
+  private long keepAliveSeconds = 60;
+
+  private String rejectionPolicy = ABORT;
+
+  private boolean virtualThreadsEnabled;
+
+  private ExecutorService executor;
+
+  // Single thread cancelling legs that missed their deadline.
+  private ScheduledThreadPoolExecutor deadlines;
+
+  @Value("${qeats.search.executor.corePoolSize:32}")
+  public void setCorePoolSize(int corePoolSize) {
+    this.corePoolSize = corePoolSize;
+  }
+
+  @Value("${qeats.search.executor.maxPoolSize:32}")
+  public void setMaxPoolSize(int maxPoolSize) {
+    this.maxPoolSize = maxPoolSize;
+  }
+
+  @Value("${qeats.search.executor.queueCapacity:256}")
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  @Value("${qeats.search.executor.keepAliveSeconds:60}")
+  public void setKeepAliveSeconds(long keepAliveSeconds) {
+    this.keepAliveSeconds = keepAliveSeconds;
+  }
+
+  @Value("${qeats.search.executor.rejectionPolicy:abort}")
+  public void setRejectionPolicy(String rejectionPolicy) {
+    this.rejectionPolicy = rejectionPolicy;
+  }
+
+  @Value("${qeats.threads.virtual.enabled:false}")
+  public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+    this.virtualThreadsEnabled = virtualThreadsEnabled;
+  }
+
+  @PostConstruct
+  public void initExecutor() {
+    if (!ABORT.equals(rejectionPolicy) && !CALLER_RUNS.equals(rejectionPolicy)) {
+      throw new IllegalArgumentException("Unknown search executor rejection policy "
+          + rejectionPolicy + ", expected " + ABORT + " or " + CALLER_RUNS);
+    }
+    deadlines = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("search-deadline-%d").setDaemon(true).build());
+    deadlines.setRemoveOnCancelPolicy(true);
+    if (virtualThreadsEnabled && VirtualThreads.isSupported()) {
+      executor = VirtualThreads.newPerTaskExecutor();
+      log.info("Search legs run on virtual threads");
+    } else {
+      if (virtualThreadsEnabled) {
+        log.warn("qeats.threads.virtual.enabled is set but this JDK has no virtual threads, "
+            + "search legs run on the bounded pool");
+      }
+      executor = newThreadPool();
+    }
+    if (meterRegistry != null) {
+      ExecutorServiceMetrics.monitor(meterRegistry, executor, "searchExecutor");
+    }
+  }
+
+  private ThreadPoolExecutor newThreadPool() {
+    BlockingQueue<Runnable> queue = queueCapacity > 0
+        ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(corePoolSize,
+        Math.max(corePoolSize, maxPoolSize), keepAliveSeconds, TimeUnit.SECONDS, queue,
+        new ThreadFactoryBuilder().setNameFormat("search-%d").setDaemon(true).build(),
+        new CountingRejectionHandler());
+    // Idle core threads stop after keepAliveSeconds too, so that a core as large as the maximum
+    // does not keep them all around.
+    pool.allowCoreThreadTimeOut(keepAliveSeconds > 0);
+    return pool;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    deadlines.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Runs the leg on the pool.
+   * @param leg name of the leg, used to tag its metrics
+   * @param task the leg's work
+   * @return completes with the leg's result, or exceptionally with what it threw or with a
+   *     {@link RejectedExecutionException} if the pool is saturated and the policy is abort.
+   *     Cancelling it removes the leg from the queue if it has not started yet and interrupts it
+   *     otherwise.
+   */
+  public <T> CompletableFuture<T> submit(String leg, Supplier<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    LegTask legTask = new LegTask(leg, () -> {
+      if (future.isDone()) {
+        return;
+      }
+      try {
+        future.complete(task.get());
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+    future.whenComplete((result, e) -> {
+      if (future.isCancelled()) {
+        legTask.interrupt();
+        // Frees the queue slot of a leg that has not started yet instead of leaving it there
+        // until a thread picks it up and skips it.
+        if (executor instanceof ThreadPoolExecutor) {
+          ((ThreadPoolExecutor) executor).remove(legTask);
+        }
+      }
+    });
+    try {
+      executor.execute(legTask);
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Cancels the legs that are still running after the given time.
+   * @param legs futures returned by {@link #submit}
+   * @param timeoutMs time after which the legs are cancelled
+   */
+  public void cancelAfter(Collection<? extends CompletableFuture<?>> legs, long timeoutMs) {
+    ScheduledFuture<?> timeout = deadlines.schedule(
+        () -> legs.forEach(leg -> leg.cancel(true)), timeoutMs, TimeUnit.MILLISECONDS);
+    CompletableFuture.allOf(legs.toArray(new CompletableFuture<?>[0]))
+        .whenComplete((result, e) -> timeout.cancel(false));
+  }
+
+  private void record(String name, String leg, long nanos) {
+    if (meterRegistry != null) {
+      Timer.builder(name)
+          .tags(Tags.of("leg", leg))
+          .register(meterRegistry)
+          .record(nanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private final class LegTask implements Runnable {
+
+    private final String leg;
+    private final Runnable task;
+    private final long submittedAt = System.nanoTime();
+    // Thread running the task, only set while it runs so that a cancelled leg never interrupts
+    // the task the thread moves on to.
+    private Thread runner;
+
+    private LegTask(String leg, Runnable task) {
+      this.leg = leg;
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      long startedAt = System.nanoTime();
+      record("qeats.search.leg.queue", leg, startedAt - submittedAt);
+      synchronized (this) {
+        runner = Thread.currentThread();
+      }
+      try {
+        task.run();
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+        record("qeats.search.leg.execution", leg, System.nanoTime() - startedAt);
+      }
+    }
+
+    private synchronized void interrupt() {
+      if (runner != null) {
+        runner.interrupt();
+      }
+    }
+  }
+
+  private final class CountingRejectionHandler implements RejectedExecutionHandler {
+
+    private final RejectedExecutionHandler abort = new ThreadPoolExecutor.AbortPolicy();
+    private final RejectedExecutionHandler callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      String leg = task instanceof LegTask ? ((LegTask) task).leg : "unknown";
+      if (meterRegistry != null) {
+        Counter.builder("qeats.search.leg.rejections")
+            .tags(Tags.of("leg", leg))
+            .register(meterRegistry)
+            .increment();
+      }
+      log.warn("Search executor saturated, {} leg {}", rejectionPolicy, leg);
+      if (CALLER_RUNS.equals(rejectionPolicy)) {
+        callerRuns.rejectedExecution(task, executor);
+      } else {
+        abort.rejectedExecution(task, executor);
+      }
+    }
+  }
+}
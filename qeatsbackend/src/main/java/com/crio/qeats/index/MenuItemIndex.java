@@ -0,0 +1,350 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.utils.SearchTerms;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resident inverted index from menu item names and attributes to the restaurants serving them.
+ * Every menu of the `menus` collection is one document; a query matches a menu when every one
+ * of its terms is a prefix of a term of one of its items, so item search resolves to
+ * restaurantIds without touching the database. The index is built once the application is
+ * ready and rebuilt periodically; until the first build {@link #isReady()} returns false and
+ * callers are expected to fall back to the database.
+ * Menus saved in between are kept in a small overlay that hides their indexed copy and is
+ * matched item by item, so a save costs a copy of the overlay rather than a rebuild. The
+ * overlay is folded into the index once it holds {@link #MAX_PENDING_UPDATES} menus.
+ */
+@Component
+@Log4j2
+public class MenuItemIndex {
+
+  static final int MAX_PENDING_UPDATES = 128;
+
+  @Autowired
+  private MenuRepository menuRepository;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private boolean enabled = true;
+
+  private volatile Snapshot snapshot;
+
+  @Value("${qeats.index.enabled:true}")
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @PostConstruct
+  public void registerMetrics() {
+    if (meterRegistry == null) {
+      return;
+    }
+    Gauge.builder("qeats.itemindex.menus", this, MenuItemIndex::size)
+        .description("Menus held in the in-memory item index")
+        .register(meterRegistry);
+    Gauge.builder("qeats.itemindex.terms", this, MenuItemIndex::termCount)
+        .description("Distinct item name and attribute terms in the in-memory item index")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    refresh();
+  }
+
+  @Scheduled(initialDelayString = "${qeats.index.refreshIntervalMs:300000}",
+      fixedDelayString = "${qeats.index.refreshIntervalMs:300000}")
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      rebuild();
+    } catch (RuntimeException e) {
+      log.error("Failed to rebuild menu item index, keeping previous snapshot", e);
+    }
+  }
+
+  /**
+   * Reloads every menu from the database and atomically swaps in a fresh index.
+   * @return number of menus indexed
+   */
+  public synchronized int rebuild() {
+    long start = System.currentTimeMillis();
+    Snapshot built = Snapshot.build(menuRepository.findAll());
+    snapshot = built;
+    log.info("Rebuilt menu item index with {} menus and {} terms in {}ms",
+        built.restaurantIds.size(), built.termCount(), System.currentTimeMillis() - start);
+    return built.restaurantIds.size();
+  }
+
+  /**
+   * Replaces the indexed copy of the given menu, or adds it if it is new. Does nothing until
+   * the index has been built once.
+   */
+  public synchronized void update(MenuEntity menu) {
+    Snapshot current = snapshot;
+    if (current == null || menu.getRestaurantId() == null) {
+      return;
+    }
+    Snapshot updated = current.withUpdate(menu);
+    snapshot = updated.updates.size() > MAX_PENDING_UPDATES
+        ? Snapshot.build(updated.allMenus()) : updated;
+  }
+
+  public boolean isReady() {
+    return snapshot != null;
+  }
+
+  /**
+   * Restaurants serving an item named exactly like the query, followed by the ones serving an
+   * item whose name contains a term starting with each term of the query.
+   * @return distinct restaurantIds, or an empty list if the index is not built yet
+   */
+  public List<String> findRestaurantIdsByItemName(String query) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+    Set<String> restaurantIds = new LinkedHashSet<>();
+    restaurantIds.addAll(current.findExact(SearchTerms.normalize(query)));
+    restaurantIds.addAll(current.find(current.itemNameTerms, query, MenuItemIndex::itemNamesOf));
+    return new ArrayList<>(restaurantIds);
+  }
+
+  // Restaurants serving an item whose attributes contain a term starting with each term of
+  // the query.
+  public List<String> findRestaurantIdsByItemAttributes(String query) {
+    Snapshot current = snapshot;
+    return current == null ? Collections.emptyList()
+        : current.find(current.itemAttributeTerms, query, MenuItemIndex::itemAttributesOf);
+  }
+
+  /**
+   * Looks up the menus of the given restaurants.
+   * @return the indexed menus among the given restaurantIds; unknown ids are skipped
+   */
+  public List<MenuEntity> findMenus(Collection<String> restaurantIds) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+    List<MenuEntity> menus = new ArrayList<>();
+    for (String restaurantId : restaurantIds) {
+      MenuEntity menu = current.updates.containsKey(restaurantId)
+          ? current.updates.get(restaurantId) : current.menusByRestaurantId.get(restaurantId);
+      if (menu != null) {
+        menus.add(menu);
+      }
+    }
+    return menus;
+  }
+
+  public int size() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.size();
+  }
+
+  public int termCount() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.termCount();
+  }
+
+  private static Collection<String> itemNamesOf(MenuEntity menu) {
+    List<String> names = new ArrayList<>();
+    for (Item item : menu.getItems()) {
+      names.add(item.getName());
+    }
+    return names;
+  }
+
+  private static Collection<String> itemAttributesOf(MenuEntity menu) {
+    List<String> attributes = new ArrayList<>();
+    for (Item item : menu.getItems()) {
+      if (item.getAttributes() != null) {
+        attributes.addAll(item.getAttributes());
+      }
+    }
+    return attributes;
+  }
+
+  private static final class Snapshot {
+
+    private final List<MenuEntity> menus;
+    private final Map<String, MenuEntity> menusByRestaurantId;
+    private final Map<String, Integer> positionsById;
+    private final List<String> restaurantIds;
+    private final Map<String, int[]> exactItemNames;
+    private final TermPostings itemNameTerms;
+    private final TermPostings itemAttributeTerms;
+    // Overlay of the menus saved since the build: positions of their indexed copies, and the
+    // saved menus by restaurantId, holding null for a saved menu without items.
+    private final BitSet replaced;
+    private final Map<String, MenuEntity> updates;
+
+    private Snapshot(List<MenuEntity> menus, Map<String, MenuEntity> menusByRestaurantId,
+        Map<String, Integer> positionsById, List<String> restaurantIds,
+        Map<String, int[]> exactItemNames, TermPostings itemNameTerms,
+        TermPostings itemAttributeTerms, BitSet replaced, Map<String, MenuEntity> updates) {
+      this.menus = menus;
+      this.menusByRestaurantId = menusByRestaurantId;
+      this.positionsById = positionsById;
+      this.restaurantIds = restaurantIds;
+      this.exactItemNames = exactItemNames;
+      this.itemNameTerms = itemNameTerms;
+      this.itemAttributeTerms = itemAttributeTerms;
+      this.replaced = replaced;
+      this.updates = updates;
+    }
+
+    static Snapshot build(Collection<MenuEntity> menus) {
+      List<MenuEntity> indexed = new ArrayList<>(menus.size());
+      Map<String, MenuEntity> menusByRestaurantId = new HashMap<>();
+      Map<String, Integer> positionsById = new HashMap<>();
+      List<String> restaurantIds = new ArrayList<>(menus.size());
+      TermPostings.Builder exactItemNames = new TermPostings.Builder();
+      TermPostings.Builder itemNameTerms = new TermPostings.Builder();
+      TermPostings.Builder itemAttributeTerms = new TermPostings.Builder();
+      for (MenuEntity menu : menus) {
+        if (menu.getRestaurantId() == null || menu.getItems() == null) {
+          continue;
+        }
+        int position = indexed.size();
+        indexed.add(menu);
+        menusByRestaurantId.putIfAbsent(menu.getRestaurantId(), menu);
+        positionsById.putIfAbsent(menu.getRestaurantId(), position);
+        restaurantIds.add(menu.getRestaurantId());
+        for (Item item : menu.getItems()) {
+          String name = SearchTerms.normalize(item.getName());
+          if (!name.isEmpty()) {
+            exactItemNames.addTerm(name, position);
+          }
+          itemNameTerms.add(item.getName(), position);
+          if (item.getAttributes() != null) {
+            for (String attribute : item.getAttributes()) {
+              itemAttributeTerms.add(attribute, position);
+            }
+          }
+        }
+      }
+      return new Snapshot(Collections.unmodifiableList(indexed), menusByRestaurantId,
+          positionsById, Collections.unmodifiableList(restaurantIds),
+          exactItemNames.buildExact(), itemNameTerms.build(), itemAttributeTerms.build(),
+          new BitSet(), Collections.emptyMap());
+    }
+
+    // Same index with the given menu in the overlay. Only the overlay is copied.
+    Snapshot withUpdate(MenuEntity menu) {
+      BitSet replaced = (BitSet) this.replaced.clone();
+      Integer position = positionsById.get(menu.getRestaurantId());
+      if (position != null) {
+        replaced.set(position);
+      }
+      Map<String, MenuEntity> updates = new LinkedHashMap<>(this.updates);
+      updates.put(menu.getRestaurantId(), menu.getItems() == null ? null : menu);
+      return new Snapshot(menus, menusByRestaurantId, positionsById, restaurantIds,
+          exactItemNames, itemNameTerms, itemAttributeTerms, replaced, updates);
+    }
+
+    // Indexed menus that are still current, followed by the overlay.
+    List<MenuEntity> allMenus() {
+      List<MenuEntity> all = new ArrayList<>(size());
+      for (int position = 0; position < menus.size(); position++) {
+        if (!replaced.get(position)) {
+          all.add(menus.get(position));
+        }
+      }
+      for (MenuEntity menu : updates.values()) {
+        if (menu != null) {
+          all.add(menu);
+        }
+      }
+      return all;
+    }
+
+    int size() {
+      return menus.size() - replaced.cardinality() + updates.size()
+          - Collections.frequency(updates.values(), null);
+    }
+
+    // Terms of the overlay are not counted.
+    int termCount() {
+      return itemNameTerms.termCount() + itemAttributeTerms.termCount();
+    }
+
+    List<String> findExact(String normalizedName) {
+      int[] postings = exactItemNames.get(normalizedName);
+      List<String> found = new ArrayList<>();
+      if (postings != null) {
+        for (int position : postings) {
+          if (!replaced.get(position)) {
+            found.add(restaurantIds.get(position));
+          }
+        }
+      }
+      if (!normalizedName.isEmpty()) {
+        for (MenuEntity menu : updates.values()) {
+          if (menu != null && itemNamesOf(menu).stream()
+              .anyMatch(name -> normalizedName.equals(SearchTerms.normalize(name)))) {
+            found.add(menu.getRestaurantId());
+          }
+        }
+      }
+      return found;
+    }
+
+    List<String> find(TermPostings terms, String query,
+        Function<MenuEntity, Collection<String>> texts) {
+      BitSet matches = terms.match(query, restaurantIds.size());
+      matches.andNot(replaced);
+      List<String> found = restaurantIdsAt(matches.stream().toArray());
+      if (!updates.isEmpty()) {
+        List<String> queryTerms = SearchTerms.tokenize(query);
+        for (MenuEntity menu : updates.values()) {
+          if (menu != null && SearchTerms.matchesAll(queryTerms, texts.apply(menu))) {
+            found.add(menu.getRestaurantId());
+          }
+        }
+      }
+      return found;
+    }
+
+    List<String> restaurantIdsAt(int[] positions) {
+      List<String> found = new ArrayList<>(positions.length);
+      for (int position : positions) {
+        found.add(restaurantIds.get(position));
+      }
+      return found;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.models.MenuEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+// Keeps the item index in step with menus saved through Spring Data between two full
+// rebuilds. Deletions are only picked up by the next rebuild.
+@Component
+public class MenuItemIndexUpdater extends AbstractMongoEventListener<MenuEntity> {
+
+  @Autowired
+  private MenuItemIndex menuItemIndex;
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<MenuEntity> event) {
+    menuItemIndex.update(event.getSource());
+  }
+}
@@ -0,0 +1,21 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published whenever the full `restaurants` collection has been read, so that other in-memory
+// indexes can be rebuilt from the same snapshot instead of reading it again.
+@Getter
+@AllArgsConstructor
+public class RestaurantCatalogLoadedEvent {
+
+  private final List<RestaurantEntity> restaurants;
+}
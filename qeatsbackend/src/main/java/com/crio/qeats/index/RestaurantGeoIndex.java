@@ -0,0 +1,334 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.utils.GeoUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resident lat/long grid over the `restaurants` collection.
+ * The whole catalog is bucketed into square cells of {@code cellSizeInDegrees} so that a
+ * close-by lookup only has to look at the cells overlapping the serving radius instead of
+ * scanning every restaurant. The index is built once the application is ready and rebuilt
+ * periodically, and restaurants saved or deleted in between are patched into the cells they
+ * affect; until the first build completes {@link #isReady()} returns false and callers are
+ * expected to fall back to the database.
+ */
+@Component
+@Log4j2
+public class RestaurantGeoIndex {
+
+  // Rough per-entry cost of the entity, its boxed coordinates and list/map bookkeeping.
+  private static final long ENTITY_OVERHEAD_IN_BYTES = 160;
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  @Autowired(required = false)
+  private ApplicationEventPublisher eventPublisher;
+
+  private boolean enabled = true;
+
+  private double cellSizeInDegrees = 0.05;
+
+  private volatile Snapshot snapshot;
+
+  @Value("${qeats.index.enabled:true}")
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Value("${qeats.index.cellSizeInDegrees:0.05}")
+  public void setCellSizeInDegrees(double cellSizeInDegrees) {
+    this.cellSizeInDegrees = cellSizeInDegrees;
+  }
+
+  @PostConstruct
+  public void registerMetrics() {
+    if (meterRegistry == null) {
+      return;
+    }
+    Gauge.builder("qeats.geoindex.restaurants", this, RestaurantGeoIndex::size)
+        .description("Restaurants held in the in-memory geo index")
+        .register(meterRegistry);
+    Gauge.builder("qeats.geoindex.cells", this, RestaurantGeoIndex::cellCount)
+        .description("Non-empty cells in the in-memory geo index")
+        .register(meterRegistry);
+    Gauge.builder("qeats.geoindex.memory", this, RestaurantGeoIndex::estimatedMemoryInBytes)
+        .description("Estimated heap held by the in-memory geo index")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    refresh();
+  }
+
+  @Scheduled(initialDelayString = "${qeats.index.refreshIntervalMs:300000}",
+      fixedDelayString = "${qeats.index.refreshIntervalMs:300000}")
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      rebuild();
+    } catch (RuntimeException e) {
+      log.error("Failed to rebuild restaurant geo index, keeping previous snapshot", e);
+    }
+  }
+
+  /**
+   * Reloads every restaurant from the database and atomically swaps in a fresh grid, then
+   * publishes the loaded catalog as a {@link RestaurantCatalogLoadedEvent}.
+   * @return number of restaurants indexed
+   */
+  public synchronized int rebuild() {
+    long start = System.currentTimeMillis();
+    List<RestaurantEntity> restaurants = restaurantRepository.findAll();
+
+    Map<Long, List<RestaurantEntity>> cells = new ConcurrentHashMap<>();
+    Map<String, Long> cellKeysById = new ConcurrentHashMap<>();
+    long estimatedBytes = 0;
+    int indexed = 0;
+    for (RestaurantEntity restaurant : restaurants) {
+      if (restaurant.getLatitude() == null || restaurant.getLongitude() == null) {
+        continue;
+      }
+      long key = cellKey(row(restaurant.getLatitude()), column(restaurant.getLongitude()));
+      cells.computeIfAbsent(key, k -> new ArrayList<>()).add(restaurant);
+      if (restaurant.getId() != null) {
+        cellKeysById.put(restaurant.getId(), key);
+      }
+      estimatedBytes += estimateSize(restaurant);
+      indexed++;
+    }
+
+    snapshot = new Snapshot(cells, cellKeysById, indexed, estimatedBytes,
+        System.currentTimeMillis());
+    log.info("Rebuilt restaurant geo index with {} restaurants in {} cells in {}ms",
+        indexed, cells.size(), System.currentTimeMillis() - start);
+    if (eventPublisher != null) {
+      eventPublisher.publishEvent(new RestaurantCatalogLoadedEvent(restaurants));
+    }
+    return indexed;
+  }
+
+  /**
+   * Moves the given saved restaurant into the cell of its current position, so that the save is
+   * visible before the next rebuild. Only the cells it leaves and enters are copied; readers
+   * see each cell either before or after the change. Does nothing before the first build.
+   */
+  public synchronized void update(RestaurantEntity restaurant) {
+    Snapshot current = snapshot;
+    if (current == null || restaurant.getId() == null) {
+      return;
+    }
+    current.remove(restaurant.getId());
+    if (restaurant.getLatitude() != null && restaurant.getLongitude() != null) {
+      current.add(cellKey(row(restaurant.getLatitude()), column(restaurant.getLongitude())),
+          restaurant);
+    }
+  }
+
+  /**
+   * Drops the deleted restaurant with the given id from its cell. Does nothing before the first
+   * build or if the restaurant is not indexed.
+   */
+  public synchronized void remove(String id) {
+    Snapshot current = snapshot;
+    if (current != null) {
+      current.remove(id);
+    }
+  }
+
+  public boolean isReady() {
+    return snapshot != null;
+  }
+
+  /**
+   * Returns every indexed restaurant located in a cell that overlaps the circle of the given
+   * radius. The result is a superset of the restaurants inside the circle; callers still need
+   * to apply the exact distance check.
+   * @param latitude latitude of the circle's centre
+   * @param longitude longitude of the circle's centre
+   * @param radiusInKms radius of the circle
+   * @return candidate restaurants, or an empty list if the index is not built yet
+   */
+  public List<RestaurantEntity> findCandidatesCloseBy(double latitude, double longitude,
+      double radiusInKms) {
+    double latitudeDelta = GeoUtils.latitudeDeltaInDegrees(radiusInKms);
+    double longitudeDelta = GeoUtils.longitudeDeltaInDegrees(latitude, radiusInKms);
+
+    return findCandidatesWithin(latitude - latitudeDelta, latitude + latitudeDelta,
+        longitude - longitudeDelta, longitude + longitudeDelta);
+  }
+
+  /**
+   * Returns every indexed restaurant located in a cell that overlaps the given bounding box.
+   * Longitudes outside [-180, 180] wrap around the antimeridian.
+   */
+  public List<RestaurantEntity> findCandidatesWithin(double minLatitude, double maxLatitude,
+      double minLongitude, double maxLongitude) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+
+    int firstRow = row(Math.max(-90.0, minLatitude));
+    int lastRow = row(Math.min(90.0, maxLatitude));
+    int columnCount = columnCount();
+    int firstColumn = (int) Math.floor((minLongitude + 180.0) / cellSizeInDegrees);
+    int lastColumn = (int) Math.floor((maxLongitude + 180.0) / cellSizeInDegrees);
+    if (lastColumn - firstColumn + 1 >= columnCount) {
+      firstColumn = 0;
+      lastColumn = columnCount - 1;
+    }
+
+    List<RestaurantEntity> candidates = new ArrayList<>();
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        int wrappedColumn = Math.floorMod(column, columnCount);
+        List<RestaurantEntity> cell = current.cells.get(cellKey(row, wrappedColumn));
+        if (cell != null) {
+          candidates.addAll(cell);
+        }
+      }
+    }
+    return candidates;
+  }
+
+  public int size() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.restaurantCount;
+  }
+
+  public int cellCount() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.cells.size();
+  }
+
+  public long estimatedMemoryInBytes() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.estimatedBytes;
+  }
+
+  public long lastBuiltAtMillis() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.builtAtMillis;
+  }
+
+  private int row(double latitude) {
+    int rowCount = (int) Math.ceil(180.0 / cellSizeInDegrees);
+    return Math.min(rowCount - 1, (int) Math.floor((latitude + 90.0) / cellSizeInDegrees));
+  }
+
+  private int column(double longitude) {
+    return Math.floorMod((int) Math.floor((longitude + 180.0) / cellSizeInDegrees),
+        columnCount());
+  }
+
+  private int columnCount() {
+    return (int) Math.ceil(360.0 / cellSizeInDegrees);
+  }
+
+  private static long cellKey(int row, int column) {
+    return ((long) row << 32) | (column & 0xffffffffL);
+  }
+
+  private static long estimateSize(RestaurantEntity restaurant) {
+    long size = ENTITY_OVERHEAD_IN_BYTES;
+    size += sizeOf(restaurant.getId()) + sizeOf(restaurant.getRestaurantId());
+    size += sizeOf(restaurant.getName()) + sizeOf(restaurant.getCity());
+    size += sizeOf(restaurant.getImageUrl());
+    size += sizeOf(restaurant.getOpensAt()) + sizeOf(restaurant.getClosesAt());
+    if (restaurant.getAttributes() != null) {
+      for (String attribute : restaurant.getAttributes()) {
+        size += sizeOf(attribute);
+      }
+    }
+    return size;
+  }
+
+  private static long sizeOf(String value) {
+    return value == null ? 0 : 40 + 2L * value.length();
+  }
+
+  // Cells are swapped one at a time by update and remove, which hold the index lock; a cell list
+  // is never changed once it is in the map.
+  private static final class Snapshot {
+
+    private final Map<Long, List<RestaurantEntity>> cells;
+    // Key of the cell each restaurant is in, by id.
+    private final Map<String, Long> cellKeysById;
+    private volatile int restaurantCount;
+    private volatile long estimatedBytes;
+    private final long builtAtMillis;
+
+    private Snapshot(Map<Long, List<RestaurantEntity>> cells, Map<String, Long> cellKeysById,
+        int restaurantCount, long estimatedBytes, long builtAtMillis) {
+      this.cells = cells;
+      this.cellKeysById = cellKeysById;
+      this.restaurantCount = restaurantCount;
+      this.estimatedBytes = estimatedBytes;
+      this.builtAtMillis = builtAtMillis;
+    }
+
+    private void add(long key, RestaurantEntity restaurant) {
+      List<RestaurantEntity> cell =
+          new ArrayList<>(cells.getOrDefault(key, Collections.emptyList()));
+      cell.add(restaurant);
+      cells.put(key, cell);
+      cellKeysById.put(restaurant.getId(), key);
+      restaurantCount++;
+      estimatedBytes += estimateSize(restaurant);
+    }
+
+    private void remove(String id) {
+      Long key = cellKeysById.remove(id);
+      List<RestaurantEntity> previous = key == null ? null : cells.get(key);
+      if (previous == null) {
+        return;
+      }
+      List<RestaurantEntity> cell = new ArrayList<>(previous);
+      for (Iterator<RestaurantEntity> iterator = cell.iterator(); iterator.hasNext(); ) {
+        RestaurantEntity restaurant = iterator.next();
+        if (id.equals(restaurant.getId())) {
+          iterator.remove();
+          restaurantCount--;
+          estimatedBytes -= estimateSize(restaurant);
+        }
+      }
+      if (cell.isEmpty()) {
+        cells.remove(key);
+      } else {
+        cells.put(key, cell);
+      }
+    }
+  }
+}
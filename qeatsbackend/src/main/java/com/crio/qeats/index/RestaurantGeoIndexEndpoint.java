@@ -0,0 +1,43 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+// Actuator endpoint to inspect and rebuild the in-memory geo index.
+// curl -X GET "http://localhost:8081/actuator/geoindex"
+// curl -X POST "http://localhost:8081/actuator/geoindex"
+@Component
+@Endpoint(id = "geoindex")
+public class RestaurantGeoIndexEndpoint {
+
+  @Autowired
+  private RestaurantGeoIndex restaurantGeoIndex;
+
+  @ReadOperation
+  public Map<String, Object> stats() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("ready", restaurantGeoIndex.isReady());
+    stats.put("restaurants", restaurantGeoIndex.size());
+    stats.put("cells", restaurantGeoIndex.cellCount());
+    stats.put("estimatedMemoryInBytes", restaurantGeoIndex.estimatedMemoryInBytes());
+    stats.put("lastBuiltAtMillis", restaurantGeoIndex.lastBuiltAtMillis());
+    return stats;
+  }
+
+  @WriteOperation
+  public Map<String, Object> rebuild() {
+    restaurantGeoIndex.rebuild();
+    return stats();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.stereotype.Component;
+
+// Keeps the geo index in step with restaurants saved or deleted through Spring Data between two
+// full rebuilds. A delete event only carries the query, so the ids it matches are read before
+// the delete runs. Runs ahead of the other listeners, so that the cache cells they drop are
+// reloaded from the patched index.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RestaurantGeoIndexUpdater extends AbstractMongoEventListener<RestaurantEntity> {
+
+  @Autowired
+  private RestaurantGeoIndex restaurantGeoIndex;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  // Ids matched by each delete query being run.
+  private final Map<Document, List<String>> pendingDeletes = new ConcurrentHashMap<>();
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<RestaurantEntity> event) {
+    restaurantGeoIndex.update(event.getSource());
+  }
+
+  @Override
+  public void onBeforeDelete(BeforeDeleteEvent<RestaurantEntity> event) {
+    if (!restaurantGeoIndex.isReady()) {
+      return;
+    }
+    BasicQuery query = new BasicQuery(event.getSource(), new Document("_id", 1));
+    List<String> ids = mongoTemplate.find(query, RestaurantEntity.class,
+        event.getCollectionName()).stream()
+        .map(RestaurantEntity::getId)
+        .collect(Collectors.toList());
+    pendingDeletes.put(event.getSource(), ids);
+  }
+
+  @Override
+  public void onAfterDelete(AfterDeleteEvent<RestaurantEntity> event) {
+    List<String> ids = pendingDeletes.remove(event.getSource());
+    if (ids != null) {
+      ids.forEach(restaurantGeoIndex::remove);
+    }
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.SearchTerms;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resident inverted index over the names and attributes (cuisines) of the `restaurants`
+ * collection.
+ * Names and attributes are split into {@link SearchTerms terms}; each term maps to the sorted
+ * positions of the restaurants containing it. A query matches a restaurant when every one of
+ * its terms is a prefix of some indexed term, so "piz hut" finds "Pizza Hut".
+ * The index is rebuilt from every {@link RestaurantCatalogLoadedEvent}; until the first build
+ * {@link #isReady()} returns false and callers are expected to fall back to the database.
+ * Restaurants saved in between are kept in a small overlay that hides their indexed copy and is
+ * matched term by term, so a save costs a copy of the overlay rather than a rebuild. The
+ * overlay is folded into the index once it holds {@link #MAX_PENDING_UPDATES} restaurants.
+ */
+@Component
+@Log4j2
+public class RestaurantTextIndex {
+
+  static final int MAX_PENDING_UPDATES = 128;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private volatile Snapshot snapshot;
+
+  @PostConstruct
+  public void registerMetrics() {
+    if (meterRegistry == null) {
+      return;
+    }
+    Gauge.builder("qeats.textindex.restaurants", this, RestaurantTextIndex::size)
+        .description("Restaurants held in the in-memory text index")
+        .register(meterRegistry);
+    Gauge.builder("qeats.textindex.terms", this, RestaurantTextIndex::termCount)
+        .description("Distinct name and attribute terms in the in-memory text index")
+        .register(meterRegistry);
+  }
+
+  @EventListener
+  public void onCatalogLoaded(RestaurantCatalogLoadedEvent event) {
+    rebuild(event.getRestaurants());
+  }
+
+  /**
+   * Swaps in a fresh index over the given restaurants.
+   * @return number of restaurants indexed
+   */
+  public synchronized int rebuild(Collection<RestaurantEntity> restaurants) {
+    long start = System.currentTimeMillis();
+    Snapshot built = Snapshot.build(new ArrayList<>(restaurants));
+    snapshot = built;
+    log.info("Rebuilt restaurant text index with {} restaurants and {} terms in {}ms",
+        built.restaurants.size(), built.termCount(), System.currentTimeMillis() - start);
+    return built.restaurants.size();
+  }
+
+  /**
+   * Replaces the indexed copy of the given restaurant, or adds it if it is new. Does nothing
+   * until the index has been built once.
+   */
+  public synchronized void update(RestaurantEntity restaurant) {
+    Snapshot current = snapshot;
+    if (current == null || restaurant.getRestaurantId() == null) {
+      return;
+    }
+    Snapshot updated = current.withUpdate(restaurant);
+    snapshot = updated.updates.size() > MAX_PENDING_UPDATES
+        ? Snapshot.build(updated.allRestaurants()) : updated;
+  }
+
+  public boolean isReady() {
+    return snapshot != null;
+  }
+
+  // Restaurants whose whole name equals the query, ignoring case and punctuation.
+  public List<RestaurantEntity> findByNameExact(String query) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+    return current.findExact(SearchTerms.normalize(query));
+  }
+
+  // Restaurants whose name contains a term starting with each term of the query.
+  public List<RestaurantEntity> findByName(String query) {
+    Snapshot current = snapshot;
+    return current == null ? Collections.emptyList()
+        : current.find(current.nameTerms, query, RestaurantTextIndex::nameOf);
+  }
+
+  // Restaurants whose attributes contain a term starting with each term of the query.
+  public List<RestaurantEntity> findByAttributes(String query) {
+    Snapshot current = snapshot;
+    return current == null ? Collections.emptyList()
+        : current.find(current.attributeTerms, query, RestaurantEntity::getAttributes);
+  }
+
+  /**
+   * Looks up restaurants by restaurantId in a single pass over the index.
+   * @return the indexed restaurants among the given ids, in index order; unknown ids are
+   *     skipped
+   */
+  public List<RestaurantEntity> findByRestaurantIds(Collection<String> restaurantIds) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+    BitSet positions = new BitSet(current.restaurants.size());
+    for (String restaurantId : restaurantIds) {
+      Integer position = current.positionsById.get(restaurantId);
+      if (position != null) {
+        positions.set(position);
+      }
+    }
+    positions.andNot(current.replaced);
+    List<RestaurantEntity> found = current.restaurantsAt(positions.stream().toArray());
+    if (!current.updates.isEmpty()) {
+      Set<String> ids = new HashSet<>(restaurantIds);
+      for (RestaurantEntity restaurant : current.updates.values()) {
+        if (ids.contains(restaurant.getRestaurantId())) {
+          found.add(restaurant);
+        }
+      }
+    }
+    return found;
+  }
+
+  public int size() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.size();
+  }
+
+  private static Collection<String> nameOf(RestaurantEntity restaurant) {
+    return Collections.singletonList(restaurant.getName());
+  }
+
+  public int termCount() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.termCount();
+  }
+
+  private static final class Snapshot {
+
+    private final List<RestaurantEntity> restaurants;
+    private final Map<String, Integer> positionsById;
+    private final Map<String, int[]> exactNames;
+    private final TermPostings nameTerms;
+    private final TermPostings attributeTerms;
+    // Overlay of the restaurants saved since the build: positions of their indexed copies,
+    // and the saved restaurants by restaurantId.
+    private final BitSet replaced;
+    private final Map<String, RestaurantEntity> updates;
+
+    private Snapshot(List<RestaurantEntity> restaurants, Map<String, Integer> positionsById,
+        Map<String, int[]> exactNames, TermPostings nameTerms, TermPostings attributeTerms,
+        BitSet replaced, Map<String, RestaurantEntity> updates) {
+      this.restaurants = restaurants;
+      this.positionsById = positionsById;
+      this.exactNames = exactNames;
+      this.nameTerms = nameTerms;
+      this.attributeTerms = attributeTerms;
+      this.replaced = replaced;
+      this.updates = updates;
+    }
+
+    static Snapshot build(List<RestaurantEntity> restaurants) {
+      Map<String, Integer> positionsById = new HashMap<>();
+      TermPostings.Builder exactNames = new TermPostings.Builder();
+      TermPostings.Builder nameTerms = new TermPostings.Builder();
+      TermPostings.Builder attributeTerms = new TermPostings.Builder();
+      for (int position = 0; position < restaurants.size(); position++) {
+        RestaurantEntity restaurant = restaurants.get(position);
+        positionsById.putIfAbsent(restaurant.getRestaurantId(), position);
+        String name = SearchTerms.normalize(restaurant.getName());
+        if (!name.isEmpty()) {
+          exactNames.addTerm(name, position);
+        }
+        nameTerms.add(restaurant.getName(), position);
+        if (restaurant.getAttributes() != null) {
+          for (String attribute : restaurant.getAttributes()) {
+            attributeTerms.add(attribute, position);
+          }
+        }
+      }
+      return new Snapshot(Collections.unmodifiableList(restaurants), positionsById,
+          exactNames.buildExact(), nameTerms.build(), attributeTerms.build(), new BitSet(),
+          Collections.emptyMap());
+    }
+
+    // Same index with the given restaurant in the overlay. Only the overlay is copied.
+    Snapshot withUpdate(RestaurantEntity restaurant) {
+      BitSet replaced = (BitSet) this.replaced.clone();
+      Integer position = positionsById.get(restaurant.getRestaurantId());
+      if (position != null) {
+        replaced.set(position);
+      }
+      Map<String, RestaurantEntity> updates = new LinkedHashMap<>(this.updates);
+      updates.put(restaurant.getRestaurantId(), restaurant);
+      return new Snapshot(restaurants, positionsById, exactNames, nameTerms, attributeTerms,
+          replaced, updates);
+    }
+
+    // Indexed restaurants that are still current, followed by the overlay.
+    List<RestaurantEntity> allRestaurants() {
+      List<RestaurantEntity> all = new ArrayList<>(size());
+      for (int position = 0; position < restaurants.size(); position++) {
+        if (!replaced.get(position)) {
+          all.add(restaurants.get(position));
+        }
+      }
+      all.addAll(updates.values());
+      return all;
+    }
+
+    int size() {
+      return restaurants.size() - replaced.cardinality() + updates.size();
+    }
+
+    // Terms of the overlay are not counted.
+    int termCount() {
+      return nameTerms.termCount() + attributeTerms.termCount();
+    }
+
+    List<RestaurantEntity> findExact(String normalizedName) {
+      int[] postings = exactNames.get(normalizedName);
+      List<RestaurantEntity> found = postings == null ? new ArrayList<>() : current(postings);
+      if (!normalizedName.isEmpty()) {
+        for (RestaurantEntity restaurant : updates.values()) {
+          if (normalizedName.equals(SearchTerms.normalize(restaurant.getName()))) {
+            found.add(restaurant);
+          }
+        }
+      }
+      return found;
+    }
+
+    List<RestaurantEntity> find(TermPostings terms, String query,
+        Function<RestaurantEntity, Collection<String>> texts) {
+      BitSet matches = terms.match(query, restaurants.size());
+      matches.andNot(replaced);
+      List<RestaurantEntity> found = restaurantsAt(matches.stream().toArray());
+      if (!updates.isEmpty()) {
+        List<String> queryTerms = SearchTerms.tokenize(query);
+        for (RestaurantEntity restaurant : updates.values()) {
+          if (SearchTerms.matchesAll(queryTerms, texts.apply(restaurant))) {
+            found.add(restaurant);
+          }
+        }
+      }
+      return found;
+    }
+
+    // Restaurants at the given positions, leaving out the ones replaced by the overlay.
+    List<RestaurantEntity> current(int[] positions) {
+      List<RestaurantEntity> found = new ArrayList<>(positions.length);
+      for (int position : positions) {
+        if (!replaced.get(position)) {
+          found.add(restaurants.get(position));
+        }
+      }
+      return found;
+    }
+
+    List<RestaurantEntity> restaurantsAt(int[] positions) {
+      List<RestaurantEntity> found = new ArrayList<>(positions.length);
+      for (int position : positions) {
+        found.add(restaurants.get(position));
+      }
+      return found;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.models.RestaurantEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+// Keeps the text index in step with restaurants saved through Spring Data between two full
+// rebuilds. Deletions are only picked up by the next rebuild.
+@Component
+public class RestaurantTextIndexUpdater extends AbstractMongoEventListener<RestaurantEntity> {
+
+  @Autowired
+  private RestaurantTextIndex restaurantTextIndex;
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<RestaurantEntity> event) {
+    restaurantTextIndex.update(event.getSource());
+  }
+}
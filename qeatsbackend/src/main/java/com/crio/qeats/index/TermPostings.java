@@ -0,0 +1,117 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import com.crio.qeats.utils.SearchTerms;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable map from {@link SearchTerms terms} to the ascending positions of the documents
+ * containing them. Terms are sorted, so every term starting with a prefix is found with a
+ * single range scan.
+ */
+final class TermPostings {
+
+  private final NavigableMap<String, int[]> terms;
+
+  private TermPostings(NavigableMap<String, int[]> terms) {
+    this.terms = terms;
+  }
+
+  int termCount() {
+    return terms.size();
+  }
+
+  /**
+   * Positions of the documents in which every term of the query is a prefix of some term.
+   * @param query text to tokenize into query terms
+   * @param documentCount number of indexed documents
+   * @return matching positions; empty if nothing matches or the query has no terms
+   */
+  BitSet match(String query, int documentCount) {
+    List<String> queryTerms = SearchTerms.tokenize(query);
+    BitSet matches = new BitSet(documentCount);
+    for (int i = 0; i < queryTerms.size(); i++) {
+      BitSet termMatches = new BitSet(documentCount);
+      String prefix = queryTerms.get(i);
+      for (int[] positions : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+          .values()) {
+        for (int position : positions) {
+          termMatches.set(position);
+        }
+      }
+      if (i == 0) {
+        matches = termMatches;
+      } else {
+        matches.and(termMatches);
+      }
+      if (matches.isEmpty()) {
+        break;
+      }
+    }
+    return matches;
+  }
+
+  static final class Builder {
+
+    private final Map<String, Positions> terms = new HashMap<>();
+
+    // Indexes every term of the text under the given position. Positions must be added in
+    // ascending order.
+    Builder add(String text, int position) {
+      for (String term : SearchTerms.tokenize(text)) {
+        addTerm(term, position);
+      }
+      return this;
+    }
+
+    Builder addTerm(String term, int position) {
+      terms.computeIfAbsent(term, k -> new Positions()).add(position);
+      return this;
+    }
+
+    TermPostings build() {
+      NavigableMap<String, int[]> sorted = new TreeMap<>();
+      terms.forEach((term, positions) -> sorted.put(term, positions.toArray()));
+      return new TermPostings(sorted);
+    }
+
+    // Exact lookup table of the same terms, for whole-value matches.
+    Map<String, int[]> buildExact() {
+      Map<String, int[]> exact = new HashMap<>();
+      terms.forEach((term, positions) -> exact.put(term, positions.toArray()));
+      return exact;
+    }
+  }
+
+  // Growable list of ascending positions; a document repeating a term is only added once.
+  private static final class Positions {
+
+    private int[] positions = new int[4];
+    private int size;
+
+    void add(int position) {
+      if (size > 0 && positions[size - 1] == position) {
+        return;
+      }
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(positions, size);
+    }
+  }
+}
@@ -1,14 +1,18 @@
-
 package com.crio.qeats.models;
 
+import com.crio.qeats.dto.Cart;
 import com.crio.qeats.dto.Item;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.validation.constraints.NotNull;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
 @Data
 @Document(collection = "carts")
@@ -24,30 +28,90 @@ public class CartEntity {
   @NotNull
   private String userId;
 
+  // One line per distinct item, keyed by itemId and stored as the items sub-document, so that
+  // adding or removing an item is a single $inc of items.<itemId>.quantity whatever the size
+  // of the cart. Item ids must not contain '.' or start with '$'. Carts stored with an items
+  // array before are rewritten on startup by CartItemsMigration.
   @NotNull
-  private List<Item> items = new ArrayList<>();
+  @JsonIgnore
+  @Field("items")
+  private Map<String, CartItemEntity> lines = new LinkedHashMap<>();
 
-  @NotNull
-  private int total = 0;
+  // Version of the Redis copy last written back by CartRepositoryServiceRedisImpl, so that an
+  // older copy is never written over a newer one. Not set for carts it never wrote.
+  @JsonIgnore
+  private Long version;
 
-  public void addItem(Item item) {
-    items.add(item);
-    total += item.getPrice();
+  /**
+   * Lists every item in the cart once per unit, as exposed by {@link Cart}.
+   */
+  public List<Item> getItems() {
+    List<Item> items = new ArrayList<>();
+    for (Map.Entry<String, CartItemEntity> line : lines.entrySet()) {
+      Item item = line.getValue().toItem(line.getKey());
+      for (int i = 0; i < line.getValue().getQuantity(); i++) {
+        items.add(item);
+      }
+    }
+    return items;
   }
 
-  public void removeItem(Item item) {
-    boolean removed = items.remove(item);
+  public void setItems(List<Item> items) {
+    lines.clear();
+    items.forEach(this::addItem);
+  }
+
+  public int getTotal() {
+    int total = 0;
+    for (CartItemEntity line : lines.values()) {
+      total += line.getPrice() * line.getQuantity();
+    }
+    return total;
+  }
 
-    if (removed) {
-      total -= item.getPrice();
+  public void addItem(Item item) {
+    CartItemEntity line = lines.get(item.getItemId());
+    if (line == null) {
+      lines.put(item.getItemId(), CartItemEntity.of(item, 1));
+    } else {
+      line.setQuantity(line.getQuantity() + 1);
     }
+  }
 
+  public void removeItem(Item item) {
+    CartItemEntity line = lines.get(item.getItemId());
+    if (line == null) {
+      return;
+    }
+    if (line.getQuantity() > 1) {
+      line.setQuantity(line.getQuantity() - 1);
+    } else {
+      lines.remove(item.getItemId());
+    }
   }
 
   public void clearCart() {
-    if (items.size() > 0) {
-      items.clear();
-      total = 0;
+    lines.clear();
+  }
+
+  public static CartEntity fromCart(Cart cart) {
+    CartEntity cartEntity = new CartEntity();
+    cartEntity.setId(cart.getId());
+    cartEntity.setRestaurantId(cart.getRestaurantId());
+    cartEntity.setUserId(cart.getUserId());
+    if (cart.getItems() != null) {
+      cartEntity.setItems(cart.getItems());
     }
+    return cartEntity;
+  }
+
+  public Cart toCart() {
+    Cart cart = new Cart();
+    cart.setId(id);
+    cart.setRestaurantId(restaurantId);
+    cart.setUserId(userId);
+    cart.setItems(getItems());
+    cart.setTotal(getTotal());
+    return cart;
   }
 }
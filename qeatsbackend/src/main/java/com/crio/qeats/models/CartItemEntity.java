@@ -0,0 +1,56 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.models;
+
+import com.crio.qeats.dto.Item;
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One line of a cart: an item, the price it was added at, and how many of it the cart holds.
+// The itemId is the key of the line in CartEntity#lines.
+@Data
+@NoArgsConstructor
+public class CartItemEntity {
+
+  @NotNull
+  private String name;
+
+  @NotNull
+  private String imageUrl;
+
+  @NotNull
+  private List<String> attributes = new ArrayList<>();
+
+  @NotNull
+  private int price;
+
+  @NotNull
+  private int quantity;
+
+  public static CartItemEntity of(Item item, int quantity) {
+    CartItemEntity line = new CartItemEntity();
+    line.setName(item.getName());
+    line.setImageUrl(item.getImageUrl());
+    line.setAttributes(item.getAttributes());
+    line.setPrice(item.getPrice());
+    line.setQuantity(quantity);
+    return line;
+  }
+
+  public Item toItem(String itemId) {
+    Item item = new Item();
+    item.setItemId(itemId);
+    item.setName(name);
+    item.setImageUrl(imageUrl);
+    item.setAttributes(attributes);
+    item.setPrice(price);
+    return item;
+  }
+}
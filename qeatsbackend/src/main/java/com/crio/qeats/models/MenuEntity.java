@@ -8,6 +8,7 @@
 package com.crio.qeats.models;
 
 import com.crio.qeats.dto.Item;
+import com.crio.qeats.dto.Menu;
 import java.util.ArrayList;
 import java.util.List;
 import javax.validation.constraints.NotNull;
@@ -32,4 +33,8 @@ public class MenuEntity {
   @NotNull
   private List<Item> items = new ArrayList<>();
 
+  public Menu toMenu() {
+    return new Menu(restaurantId, items == null ? null : new ArrayList<>(items));
+  }
+
 }
@@ -1,6 +1,8 @@
 package com.crio.qeats.models;
 
+import com.crio.qeats.dto.Cart;
 import com.crio.qeats.dto.Item;
+import com.crio.qeats.dto.Order;
 import java.util.ArrayList;
 import java.util.List;
 import javax.validation.constraints.NotNull;
@@ -85,4 +87,20 @@ public class OrderEntity {
   public void setPlacedTime(String placedTime) {
     this.placedTime = placedTime;
   }
+
+  // The order takes the id of the cart it is placed from.
+  public static OrderEntity fromCart(Cart cart) {
+    OrderEntity order = new OrderEntity();
+    order.setId(cart.getId());
+    order.setRestaurantId(cart.getRestaurantId());
+    order.setUserId(cart.getUserId());
+    order.setItems(cart.getItems() == null ? null : new ArrayList<>(cart.getItems()));
+    order.setTotal(cart.getTotal());
+    return order;
+  }
+
+  public Order toOrder() {
+    return new Order(id, restaurantId, userId, items == null ? null : new ArrayList<>(items),
+        total, placedTime, status);
+  }
 }
\ No newline at end of file
@@ -6,12 +6,21 @@
 
 package com.crio.qeats.models;
 
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.OpeningHours;
 import java.util.ArrayList;
 import java.util.List;
 import javax.validation.constraints.NotNull;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 // Java class that maps to Mongo collection.
@@ -20,6 +29,8 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @NoArgsConstructor
 public class RestaurantEntity {
 
+  private static final int UNPARSED = Integer.MIN_VALUE;
+
   @Id
   private String id;
 
@@ -41,6 +52,9 @@ public class RestaurantEntity {
   @NotNull
   private Double longitude;
 
+  // GeoJSON copy of latitude/longitude backing the 2dsphere index used for close-by queries.
+  private GeoJsonPoint location;
+
   @NotNull
   private String opensAt;
 
@@ -50,5 +64,52 @@ public class RestaurantEntity {
   @NotNull
   private List<String> attributes = new ArrayList<>();
 
+  // Minute-of-day copies of opensAt/closesAt, parsed once on first use.
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private int opensAtMinute = UNPARSED;
+
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private int closesAtMinute = UNPARSED;
+
+  public void setOpensAt(String opensAt) {
+    this.opensAt = opensAt;
+    this.opensAtMinute = UNPARSED;
+  }
+
+  public void setClosesAt(String closesAt) {
+    this.closesAt = closesAt;
+    this.closesAtMinute = UNPARSED;
+  }
+
+  /**
+   * Checks whether the restaurant is open at the given minute of day.
+   * @see OpeningHours#isOpen(int, int, int)
+   */
+  public boolean isOpenAt(int minuteOfDay) {
+    if (opensAtMinute == UNPARSED) {
+      opensAtMinute = OpeningHours.toMinuteOfDay(opensAt);
+    }
+    if (closesAtMinute == UNPARSED) {
+      closesAtMinute = OpeningHours.toMinuteOfDay(closesAt);
+    }
+    return OpeningHours.isOpen(opensAtMinute, closesAtMinute, minuteOfDay);
+  }
+
+  // Entities may be shared by the in-memory indexes, so the attributes are copied.
+  public Restaurant toRestaurant() {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurant(id, restaurantId, name, city, imageUrl, latitude, longitude,
+        opensAt, closesAt, attributes == null ? null : new ArrayList<>(attributes));
+    return restaurant;
+  }
+
 }
 
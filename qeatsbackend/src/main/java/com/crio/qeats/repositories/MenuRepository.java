@@ -8,6 +8,7 @@
 package com.crio.qeats.repositories;
 
 import com.crio.qeats.models.MenuEntity;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -18,4 +19,6 @@ public interface MenuRepository extends MongoRepository<MenuEntity, String> {
 
   Optional<List<MenuEntity>> findMenusByItemsItemIdIn(List<String> itemIdList);
 
+  Optional<List<MenuEntity>> findMenusByRestaurantIdIn(Collection<String> restaurantIds);
+
 }
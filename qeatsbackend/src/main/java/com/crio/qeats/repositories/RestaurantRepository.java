@@ -9,6 +9,7 @@ package com.crio.qeats.repositories;
 import com.crio.qeats.models.RestaurantEntity;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -16,17 +17,36 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface RestaurantRepository extends MongoRepository<RestaurantEntity, String> {
 
-  @Query ("{'name': {$regex: '^?0$', $options: 'i'}}")
-  Optional<List<RestaurantEntity>> findRestaurantsByNameExact(String name);
-
-  @Query ("{'name': {$regex: '.*?0.*', $options: 'i'}}")
-  Optional<List<RestaurantEntity>> findRestaurantsByName(String name);
-
   Optional<List<RestaurantEntity>> 
       findByAttributesInIgnoreCase(List<String> attributes);
 
   Optional<List<RestaurantEntity>> 
       findRestaurantsByRestaurantIdIn(List<String> restaurantIds);
 
+  // Restaurants within maxDistanceInMeters whose opening hours contain currentTime (HH:mm),
+  // nearest first. Windows with closesAt before opensAt cross midnight. Requires the 2dsphere
+  // index on `location`.
+  @Query ("{'location': {$nearSphere: {$geometry: {type: 'Point', coordinates: [?1, ?0]},"
+      + " $maxDistance: ?2}},"
+      + " $or: [{'opensAt': {$lte: ?3}, 'closesAt': {$gte: ?3}},"
+      + " {$expr: {$gte: ['$opensAt', '$closesAt']},"
+      + " $or: [{'opensAt': {$lte: ?3}}, {'closesAt': {$gte: ?3}}]}]}")
+  Optional<List<RestaurantEntity>> findOpenRestaurantsNear(double latitude, double longitude,
+      double maxDistanceInMeters, String currentTime);
+
+  // Same as findOpenRestaurantsNear, read through a cursor. Close the stream when done.
+  @Query ("{'location': {$nearSphere: {$geometry: {type: 'Point', coordinates: [?1, ?0]},"
+      + " $maxDistance: ?2}},"
+      + " $or: [{'opensAt': {$lte: ?3}, 'closesAt': {$gte: ?3}},"
+      + " {$expr: {$gte: ['$opensAt', '$closesAt']},"
+      + " $or: [{'opensAt': {$lte: ?3}}, {'closesAt': {$gte: ?3}}]}]}")
+  Stream<RestaurantEntity> streamOpenRestaurantsNear(double latitude, double longitude,
+      double maxDistanceInMeters, String currentTime);
+
+  // Restaurants inside the latitude/longitude box, regardless of opening hours.
+  @Query ("{'latitude': {$gte: ?0, $lte: ?1}, 'longitude': {$gte: ?2, $lte: ?3}}")
+  Optional<List<RestaurantEntity>> findRestaurantsWithin(double minLatitude, double maxLatitude,
+      double minLongitude, double maxLongitude);
+
 }
 
@@ -10,6 +10,7 @@ package com.crio.qeats.repositoryservices;
 import com.crio.qeats.dto.Cart;
 import com.crio.qeats.dto.Item;
 import com.crio.qeats.exceptions.CartNotFoundException;
+import com.crio.qeats.exceptions.ItemNotFromSameRestaurantException;
 import java.util.Optional;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
@@ -46,8 +47,10 @@ public interface CartRepositoryService {
    * @param restaurantId - restaurant id of the the item
    * @return Cart - updated cart after adding item
    * @throws CartNotFoundException - if cartId is invalid
+   * @throws ItemNotFromSameRestaurantException - if the cart holds items from another restaurant
    */
-  Cart addItem(Item item, String cartId, String restaurantId) throws CartNotFoundException;
+  Cart addItem(Item item, String cartId, String restaurantId)
+      throws CartNotFoundException, ItemNotFromSameRestaurantException;
 
   /**
    * TODO: CRIO_TASK_MODULE_MENUAPI - Remove the given item from cart with the given cartId.
@@ -61,5 +64,10 @@ public interface CartRepositoryService {
 
   Cart removeCart(String cartId) throws CartNotFoundException;
 
+  /**
+   * Writes any change to the cart with the given cartId that is not in the database yet.
+   * @param cartId - id of the cart
+   */
+  void flushCart(String cartId);
 
 }
@@ -10,14 +10,17 @@ package com.crio.qeats.repositoryservices;
 import com.crio.qeats.dto.Cart;
 import com.crio.qeats.dto.Item;
 import com.crio.qeats.exceptions.CartNotFoundException;
+import com.crio.qeats.exceptions.ItemNotFromSameRestaurantException;
 import com.crio.qeats.models.CartEntity;
 import com.crio.qeats.repositories.CartRepository;
-import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Optional;
-import javax.inject.Provider;
-import org.modelmapper.ModelMapper;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
@@ -28,20 +31,22 @@ public class CartRepositoryServiceImpl implements CartRepositoryService {
   CartRepository cartRepository;
 
   @Autowired
-  Provider<ModelMapper> modelMapperProvider;
+  MongoTemplate mongoTemplate;
+
+  private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options()
+      .returnNew(true);
+
+  private static final int MAX_REMOVE_ATTEMPTS = 8;
 
   @Override
  public String createCart(Cart cart) {
-    ModelMapper modelMapper = modelMapperProvider.get();
-    CartEntity cartEntity = modelMapper.map(cart, CartEntity.class);
+    CartEntity cartEntity = CartEntity.fromCart(cart);
     cartRepository.save(cartEntity);
     return cart.getRestaurantId();
   }
 
   @Override
   public Optional<Cart> findCartByUserId(String userId) {
-    ModelMapper modelMapper = modelMapperProvider.get();
-
     Optional<CartEntity> optionalCartEntity = cartRepository.findByUserId(userId);
 
     Optional<Cart> optionalCart = Optional.empty();
@@ -49,7 +54,7 @@ public class CartRepositoryServiceImpl implements CartRepositoryService {
     Cart cart = null;
 
     if (optionalCartEntity.isPresent()) {
-      cart = modelMapper.map(optionalCartEntity.get(), Cart.class);
+      cart = optionalCartEntity.get().toCart();
       optionalCart = Optional.of(cart);
     } else {
       throw new CartNotFoundException();
@@ -59,76 +64,108 @@ public class CartRepositoryServiceImpl implements CartRepositoryService {
 
   @Override
   public Cart findCartByCartId(String cartId) throws CartNotFoundException {
-    ModelMapper modelMapper = modelMapperProvider.get();
     Optional<CartEntity> cartEntity = cartRepository.findById(cartId);
     Cart cart = null;
     if (cartEntity.isPresent()) {
-      cart = modelMapper.map(cartEntity.get(), Cart.class);
+      cart = cartEntity.get().toCart();
     } else {
       throw new CartNotFoundException();
     }
     return cart;
   }
 
+  // Adds the item with a single atomic update of its line. It only applies while the cart is
+  // empty or holds items from the same restaurant, so concurrent adds can neither lose an item
+  // nor mix restaurants. The line keeps the details and price of the latest add.
   @Override
-  public Cart addItem(Item item, String cartId, String restaurantId) throws CartNotFoundException {
-    ModelMapper modelMapper = modelMapperProvider.get();
-    Optional<CartEntity> optionalCartEntity = cartRepository.findById(cartId);
-    Cart cart = null;
-    if (optionalCartEntity.isPresent()) {
-      CartEntity cartEntity = optionalCartEntity.get();
-      cartEntity.addItem(item);
-      if (cartEntity.getItems().size() == 1) {
-        cartEntity.setRestaurantId(restaurantId);
+  public Cart addItem(Item item, String cartId, String restaurantId)
+      throws CartNotFoundException, ItemNotFromSameRestaurantException {
+    Query query = new Query(Criteria.where("id").is(cartId)
+        .orOperator(Criteria.where("restaurantId").is(restaurantId),
+            Criteria.where("items").is(new Document())));
+    String line = line(item);
+    Update update = new Update()
+        .inc(line + ".quantity", 1)
+        .set(line + ".name", item.getName())
+        .set(line + ".imageUrl", item.getImageUrl())
+        .set(line + ".attributes", item.getAttributes())
+        .set(line + ".price", item.getPrice())
+        .set("restaurantId", restaurantId);
+    CartEntity cartEntity = mongoTemplate.findAndModify(query, update, RETURN_NEW,
+        CartEntity.class);
+    if (cartEntity == null) {
+      if (!cartRepository.existsById(cartId)) {
+        throw new CartNotFoundException();
       }
-      cartRepository.save(cartEntity);
-      cart = modelMapper.map(cartEntity, Cart.class);
-    } else {
-      throw new CartNotFoundException();
+      throw new ItemNotFromSameRestaurantException("Cart " + cartId
+          + " holds items from another restaurant than " + restaurantId);
     }
-    return cart;
+    return cartEntity.toCart();
   }
 
+  // Decrements the quantity of the item's line, or drops the line when it holds the last one or
+  // no valid quantity. Each is a single update conditioned on the quantity it expects, and they
+  // are retried while concurrent changes get in the way, up to MAX_REMOVE_ATTEMPTS times, until
+  // one applies or the cart no longer holds the item. The cart no longer belongs to a
+  // restaurant once empty.
   @Override
   public Cart removeItem(Item item, String cartId, String restaurantId) 
       throws CartNotFoundException {
-    ModelMapper modelMapper = modelMapperProvider.get();
-    Optional<CartEntity> optionalCartEntity = cartRepository.findById(cartId);
-    Cart cart = null;
-    if (optionalCartEntity.isPresent()) {
-      CartEntity cartEntity = optionalCartEntity.get();
-      List<Item> itemList = cartEntity.getItems();
-      for (Item itemInCart : itemList) {
-        if (item.getItemId().equals(itemInCart.getId())) {
-          cartEntity.removeItem(item);
-          break;
-        }
+    String line = line(item);
+    CartEntity cartEntity;
+    for (int attempt = 1; ; attempt++) {
+      cartEntity = mongoTemplate.findAndModify(
+          new Query(Criteria.where("id").is(cartId).and(line + ".quantity").gt(1)),
+          new Update().inc(line + ".quantity", -1), RETURN_NEW, CartEntity.class);
+      if (cartEntity != null) {
+        break;
       }
-      if (cartEntity.getItems().size() == 0) {
-        cartEntity.setRestaurantId("");
+      cartEntity = mongoTemplate.findAndModify(
+          new Query(Criteria.where("id").is(cartId).and(line).exists(true)
+              .and(line + ".quantity").not().gt(1)),
+          new Update().unset(line), RETURN_NEW, CartEntity.class);
+      if (cartEntity != null) {
+        break;
+      }
+      cartEntity = cartRepository.findById(cartId).orElseThrow(CartNotFoundException::new);
+      if (!cartEntity.getLines().containsKey(item.getItemId())) {
+        break;
+      }
+      if (attempt == MAX_REMOVE_ATTEMPTS) {
+        throw new IllegalStateException("Could not remove item " + item.getItemId()
+            + " from cart " + cartId + " after " + MAX_REMOVE_ATTEMPTS + " attempts");
       }
-      cartRepository.save(cartEntity);
-      cart = modelMapper.map(cartEntity, Cart.class);
-    } else {
-      throw new CartNotFoundException();
     }
-    return cart;
+
+    if (cartEntity.getLines().isEmpty() && !"".equals(cartEntity.getRestaurantId())) {
+      // Only while still empty: an item added meanwhile keeps its restaurant.
+      mongoTemplate.updateFirst(new Query(Criteria.where("id").is(cartId)
+          .and("items").is(new Document())), new Update().set("restaurantId", ""),
+          CartEntity.class);
+      cartEntity.setRestaurantId("");
+    }
+    return cartEntity.toCart();
   }
 
   @Override
   public Cart removeCart(String cartId) throws CartNotFoundException {
-    ModelMapper modelMapper = modelMapperProvider.get();
-    Optional<CartEntity> optionalCartEntity = cartRepository.findById(cartId);
-    Cart cart = null;
-    if (optionalCartEntity.isPresent()) {
-      CartEntity cartEntity = optionalCartEntity.get();
-      cartEntity.clearCart();
-      cartRepository.save(cartEntity);
-      cart = modelMapper.map(cartEntity, Cart.class);
-    } else {
+    CartEntity cartEntity = mongoTemplate.findAndModify(
+        new Query(Criteria.where("id").is(cartId)),
+        new Update().set("items", new Document()), RETURN_NEW,
+        CartEntity.class);
+    if (cartEntity == null) {
       throw new CartNotFoundException();
     }
-    return cart;
+    return cartEntity.toCart();
+  }
+
+  // Path of the item's line in the items sub-document.
+  private static String line(Item item) {
+    return "items." + item.getItemId();
   }
-}
 
+  // Every change is written to the database right away.
+  @Override
+  public void flushCart(String cartId) {
+  }
+}
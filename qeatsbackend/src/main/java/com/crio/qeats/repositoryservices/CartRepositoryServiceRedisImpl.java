@@ -0,0 +1,537 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.cache.LuaScript;
+import com.crio.qeats.cache.RedisCacheClient;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Cart;
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.exceptions.CartNotFoundException;
+import com.crio.qeats.exceptions.ItemNotFromSameRestaurantException;
+import com.crio.qeats.models.CartEntity;
+import com.crio.qeats.models.CartItemEntity;
+import com.crio.qeats.repositories.CartRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * Write-behind cart store, enabled with {@code qeats.cart.store=redis}.
+ * Active carts live in Redis hashes at {@code cart:<cartId>}, holding the restaurantId, userId,
+ * item count and version, plus the quantity of every item under {@code item:<itemId>} and its
+ * details under {@code json:<itemId>}, mirroring the lines of {@link CartEntity}. Adding and
+ * removing items is a single Lua script, so the restaurant check and the update are atomic
+ * across instances; it bumps the version, and the ids of modified carts are collected in the
+ * {@link #DIRTY_KEY} set.
+ * Modified carts are written back to the carts collection in batches every
+ * {@code qeats.cart.redis.flushIntervalMs}, and right away by {@link #flushCart} when an order
+ * is placed. A write only applies over an older version, so that of two concurrent flushes of
+ * a cart the older one cannot overwrite the newer one. A cart is loaded from the database the
+ * first time it is modified, and reads fall through to the database for carts that are not in
+ * Redis.
+ * When Redis is unavailable every call goes to {@link CartRepositoryServiceImpl} instead.
+ * A cart modified in the database that way has its Redis copy and dirty mark dropped on the next
+ * call reaching Redis, so that the copy cannot overwrite the change when flushed; changes to
+ * that copy not flushed before Redis became unavailable are lost.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "qeats.cart.store", havingValue = "redis")
+@Log4j2
+public class CartRepositoryServiceRedisImpl implements CartRepositoryService {
+
+  public static final String KEY_PREFIX = "cart:";
+
+  public static final String USER_KEY_PREFIX = "cart:user:";
+
+  public static final String DIRTY_KEY = "carts:dirty";
+
+  private static final String RESTAURANT_ID_FIELD = "restaurantId";
+  private static final String USER_ID_FIELD = "userId";
+  private static final String COUNT_FIELD = "count";
+  private static final String VERSION_FIELD = "version";
+  private static final String QUANTITY_PREFIX = "item:";
+  private static final String DETAILS_PREFIX = "json:";
+
+  private static final ObjectReader ITEM_READER = new ObjectMapper().readerFor(Item.class);
+  private static final ObjectWriter ITEM_WRITER = new ObjectMapper().writerFor(Item.class);
+
+  // Returns -1 if the cart is not in Redis, -2 if it holds items from another restaurant, and
+  // the updated cart otherwise.
+  private static final LuaScript ADD_ITEM = new LuaScript(
+      "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end\n"
+      + "local count = tonumber(redis.call('HGET', KEYS[1], 'count') or '0')\n"
+      + "if count > 0 and redis.call('HGET', KEYS[1], 'restaurantId') ~= ARGV[2] then\n"
+      + "  return -2\n"
+      + "end\n"
+      + "redis.call('HSET', KEYS[1], 'restaurantId', ARGV[2])\n"
+      + "redis.call('HINCRBY', KEYS[1], 'item:' .. ARGV[3], 1)\n"
+      + "redis.call('HSET', KEYS[1], 'json:' .. ARGV[3], ARGV[4])\n"
+      + "redis.call('HINCRBY', KEYS[1], 'count', 1)\n"
+      + "redis.call('HINCRBY', KEYS[1], 'version', 1)\n"
+      + "redis.call('EXPIRE', KEYS[1], ARGV[5])\n"
+      + "redis.call('SADD', KEYS[2], ARGV[1])\n"
+      + "return redis.call('HGETALL', KEYS[1])\n");
+
+  // Returns -1 if the cart is not in Redis, and the updated cart otherwise. Removing an item
+  // the cart does not hold changes nothing.
+  private static final LuaScript REMOVE_ITEM = new LuaScript(
+      "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end\n"
+      + "local quantity = tonumber(redis.call('HGET', KEYS[1], 'item:' .. ARGV[2]) or '0')\n"
+      + "if quantity > 0 then\n"
+      + "  if quantity == 1 then\n"
+      + "    redis.call('HDEL', KEYS[1], 'item:' .. ARGV[2], 'json:' .. ARGV[2])\n"
+      + "  else\n"
+      + "    redis.call('HINCRBY', KEYS[1], 'item:' .. ARGV[2], -1)\n"
+      + "  end\n"
+      + "  if redis.call('HINCRBY', KEYS[1], 'count', -1) == 0 then\n"
+      + "    redis.call('HSET', KEYS[1], 'restaurantId', '')\n"
+      + "  end\n"
+      + "  redis.call('HINCRBY', KEYS[1], 'version', 1)\n"
+      + "  redis.call('SADD', KEYS[2], ARGV[1])\n"
+      + "end\n"
+      + "redis.call('EXPIRE', KEYS[1], ARGV[3])\n"
+      + "return redis.call('HGETALL', KEYS[1])\n");
+
+  // Empties the cart but keeps its restaurant, like CartRepositoryServiceImpl#removeCart.
+  private static final LuaScript CLEAR = new LuaScript(
+      "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end\n"
+      + "for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do\n"
+      + "  if string.sub(field, 1, 5) == 'item:' or string.sub(field, 1, 5) == 'json:' then\n"
+      + "    redis.call('HDEL', KEYS[1], field)\n"
+      + "  end\n"
+      + "end\n"
+      + "redis.call('HSET', KEYS[1], 'count', 0)\n"
+      + "redis.call('HINCRBY', KEYS[1], 'version', 1)\n"
+      + "redis.call('EXPIRE', KEYS[1], ARGV[2])\n"
+      + "redis.call('SADD', KEYS[2], ARGV[1])\n"
+      + "return redis.call('HGETALL', KEYS[1])\n");
+
+  // Stores a cart read from the database, unless another caller stored it first.
+  private static final LuaScript LOAD = new LuaScript(
+      "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n"
+      + "redis.call('HMSET', KEYS[1], unpack(ARGV, 2))\n"
+      + "redis.call('EXPIRE', KEYS[1], ARGV[1])\n"
+      + "return 1\n");
+
+  @Autowired
+  CartRepositoryServiceImpl databaseStore;
+
+  @Autowired
+  CartRepository cartRepository;
+
+  @Autowired
+  MongoTemplate mongoTemplate;
+
+  @Autowired
+  RedisCacheClient redisCacheClient;
+
+  @Autowired
+  RedisConfiguration redisConfiguration;
+
+  @Autowired(required = false)
+  MeterRegistry meterRegistry;
+
+  // Carts modified in the database while Redis could not be reached, whose Redis copy is stale.
+  private final Set<String> staleCarts = ConcurrentHashMap.newKeySet();
+
+  private int ttlSeconds = 86400;
+
+  private int flushBatchSize = 500;
+
+  private Timer flushTimer;
+
+  private Counter flushedCarts;
+
+  @Value("${qeats.cart.redis.ttlSeconds:86400}")
+  public void setTtlSeconds(int ttlSeconds) {
+    this.ttlSeconds = ttlSeconds;
+  }
+
+  @Value("${qeats.cart.redis.flushBatchSize:500}")
+  public void setFlushBatchSize(int flushBatchSize) {
+    this.flushBatchSize = flushBatchSize;
+  }
+
+  @PostConstruct
+  public void registerMetrics() {
+    if (meterRegistry == null) {
+      return;
+    }
+    flushTimer = Timer.builder("qeats.cart.flush")
+        .description("Time spent writing modified carts back to the database")
+        .register(meterRegistry);
+    flushedCarts = Counter.builder("qeats.cart.flushed")
+        .description("Carts written back to the database")
+        .register(meterRegistry);
+  }
+
+  public static String key(String cartId) {
+    return KEY_PREFIX + cartId;
+  }
+
+  @Override
+  public String createCart(Cart cart) {
+    return databaseStore.createCart(cart);
+  }
+
+  @Override
+  public Optional<Cart> findCartByUserId(String userId) {
+    if (useRedis()) {
+      try {
+        String cartId = redisCacheClient.execute(jedis -> jedis.get(USER_KEY_PREFIX + userId));
+        if (cartId != null) {
+          return Optional.of(findCartByCartId(cartId));
+        }
+        Optional<Cart> cart = databaseStore.findCartByUserId(userId);
+        if (cart.isPresent() && cart.get().getId() != null) {
+          String id = cart.get().getId();
+          Map<String, String> fields = redisCacheClient.execute(jedis -> {
+            jedis.setex(USER_KEY_PREFIX + userId, ttlSeconds, id);
+            return jedis.hgetAll(key(id));
+          });
+          if (!fields.isEmpty()) {
+            return Optional.of(toCart(id, fields));
+          }
+        }
+        return cart;
+      } catch (JedisException e) {
+        log.warn("Cart store unavailable, reading from the database", e);
+      }
+    }
+    return databaseStore.findCartByUserId(userId);
+  }
+
+  @Override
+  public Cart findCartByCartId(String cartId) throws CartNotFoundException {
+    if (useRedis()) {
+      try {
+        Map<String, String> fields = redisCacheClient.execute(jedis -> jedis.hgetAll(key(cartId)));
+        if (!fields.isEmpty()) {
+          return toCart(cartId, fields);
+        }
+      } catch (JedisException e) {
+        log.warn("Cart store unavailable, reading from the database", e);
+      }
+    }
+    return databaseStore.findCartByCartId(cartId);
+  }
+
+  @Override
+  public Cart addItem(Item item, String cartId, String restaurantId)
+      throws CartNotFoundException, ItemNotFromSameRestaurantException {
+    if (useRedis()) {
+      try {
+        List<String> args = Arrays.asList(cartId, restaurantId, item.getItemId(),
+            toJson(item), String.valueOf(ttlSeconds));
+        Object result = runLoaded(ADD_ITEM, cartId, args);
+        if (Long.valueOf(-2).equals(result)) {
+          throw new ItemNotFromSameRestaurantException("Cart " + cartId
+              + " holds items from another restaurant than " + restaurantId);
+        }
+        return toCart(cartId, result);
+      } catch (JedisException e) {
+        log.warn("Cart store unavailable, writing to the database", e);
+      }
+    }
+    staleCarts.add(cartId);
+    return databaseStore.addItem(item, cartId, restaurantId);
+  }
+
+  @Override
+  public Cart removeItem(Item item, String cartId, String restaurantId)
+      throws CartNotFoundException {
+    if (useRedis()) {
+      try {
+        List<String> args = Arrays.asList(cartId, item.getItemId(),
+            String.valueOf(ttlSeconds));
+        return toCart(cartId, runLoaded(REMOVE_ITEM, cartId, args));
+      } catch (JedisException e) {
+        log.warn("Cart store unavailable, writing to the database", e);
+      }
+    }
+    staleCarts.add(cartId);
+    return databaseStore.removeItem(item, cartId, restaurantId);
+  }
+
+  @Override
+  public Cart removeCart(String cartId) throws CartNotFoundException {
+    if (useRedis()) {
+      try {
+        List<String> args = Arrays.asList(cartId, String.valueOf(ttlSeconds));
+        return toCart(cartId, runLoaded(CLEAR, cartId, args));
+      } catch (JedisException e) {
+        log.warn("Cart store unavailable, writing to the database", e);
+      }
+    }
+    staleCarts.add(cartId);
+    return databaseStore.removeCart(cartId);
+  }
+
+  @Override
+  public void flushCart(String cartId) {
+    if (useRedis()) {
+      try {
+        flush(Collections.singletonList(cartId));
+      } catch (JedisException e) {
+        log.warn("Cart store unavailable, cart {} is not flushed", cartId, e);
+      }
+    }
+  }
+
+  /**
+   * Writes the carts modified since the last run back to the database, a batch at a time.
+   * @return number of carts written
+   */
+  @Scheduled(initialDelayString = "${qeats.cart.redis.flushIntervalMs:1000}",
+      fixedDelayString = "${qeats.cart.redis.flushIntervalMs:1000}")
+  public int flushDirtyCarts() {
+    if (!useRedis()) {
+      return 0;
+    }
+    int flushed = 0;
+    try {
+      while (true) {
+        List<String> cartIds = redisCacheClient.execute(
+            jedis -> jedis.srandmember(DIRTY_KEY, flushBatchSize));
+        if (cartIds.isEmpty()) {
+          return flushed;
+        }
+        flushed += flush(cartIds);
+        if (cartIds.size() < flushBatchSize) {
+          return flushed;
+        }
+      }
+    } catch (RuntimeException e) {
+      log.error("Failed to flush modified carts, retrying on the next run", e);
+      return flushed;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flushDirtyCarts();
+  }
+
+  // Whether Redis can be used, once the copies of the carts modified in the database while it
+  // could not be reached are dropped.
+  private boolean useRedis() {
+    if (!redisConfiguration.isCacheAvailable()) {
+      return false;
+    }
+    if (staleCarts.isEmpty()) {
+      return true;
+    }
+    List<String> cartIds = new ArrayList<>(staleCarts);
+    try {
+      redisCacheClient.execute(jedis -> {
+        Pipeline pipeline = jedis.pipelined();
+        pipeline.multi();
+        for (String cartId : cartIds) {
+          pipeline.del(key(cartId));
+        }
+        pipeline.srem(DIRTY_KEY, cartIds.toArray(new String[0]));
+        pipeline.exec();
+        pipeline.sync();
+        return null;
+      });
+    } catch (JedisException e) {
+      log.warn("Cart store unavailable, stale copies of carts {} are kept", cartIds, e);
+      return false;
+    }
+    staleCarts.removeAll(cartIds);
+    return true;
+  }
+
+  // Reads the given carts and takes them off the dirty set in one transaction, so a change made
+  // right after is flushed by the next run, and writes them to the database in one bulk
+  // operation. Each cart is only written over an older version; a cart already written at the
+  // same or a newer version by a concurrent flush is left as it is. The carts are marked dirty
+  // again if the write fails.
+  private int flush(List<String> cartIds) {
+    long start = System.nanoTime();
+    Map<String, Response<Map<String, String>>> responses = new LinkedHashMap<>();
+    redisCacheClient.execute(jedis -> {
+      Pipeline pipeline = jedis.pipelined();
+      pipeline.multi();
+      for (String cartId : cartIds) {
+        responses.put(cartId, pipeline.hgetAll(key(cartId)));
+        pipeline.srem(DIRTY_KEY, cartId);
+      }
+      pipeline.exec();
+      pipeline.sync();
+      return null;
+    });
+
+    BulkOperations bulkOperations = null;
+    List<String> written = new ArrayList<>();
+    for (Map.Entry<String, Response<Map<String, String>>> response : responses.entrySet()) {
+      Map<String, String> fields = response.getValue().get();
+      if (fields.isEmpty()) {
+        continue;
+      }
+      CartEntity cartEntity = toCartEntity(response.getKey(), fields);
+      if (bulkOperations == null) {
+        bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+            CartEntity.class);
+      }
+      bulkOperations.updateOne(new Query(Criteria.where("id").is(cartEntity.getId())
+              .orOperator(Criteria.where(VERSION_FIELD).lt(cartEntity.getVersion()),
+                  Criteria.where(VERSION_FIELD).exists(false))),
+          new Update()
+              .set("restaurantId", cartEntity.getRestaurantId())
+              .set("items", cartEntity.getLines())
+              .set(VERSION_FIELD, cartEntity.getVersion()));
+      written.add(cartEntity.getId());
+    }
+    if (bulkOperations == null) {
+      return 0;
+    }
+
+    try {
+      bulkOperations.execute();
+    } catch (RuntimeException e) {
+      redisCacheClient.execute(jedis -> jedis.sadd(DIRTY_KEY, written.toArray(new String[0])));
+      throw e;
+    }
+    if (flushTimer != null) {
+      flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      flushedCarts.increment(written.size());
+    }
+    return written.size();
+  }
+
+  // Runs a cart script, first loading the cart from the database if it is not in Redis.
+  private Object runLoaded(LuaScript script, String cartId, List<String> args)
+      throws CartNotFoundException {
+    List<String> keys = Arrays.asList(key(cartId), DIRTY_KEY);
+    Object result = redisCacheClient.execute(jedis -> script.eval(jedis, keys, args));
+    if (!Long.valueOf(-1).equals(result)) {
+      return result;
+    }
+    CartEntity cartEntity = cartRepository.findById(cartId)
+        .orElseThrow(CartNotFoundException::new);
+    List<String> loadArgs = toFields(cartEntity);
+    return redisCacheClient.execute(jedis -> {
+      LOAD.eval(jedis, Collections.singletonList(key(cartId)), loadArgs);
+      return script.eval(jedis, keys, args);
+    });
+  }
+
+  // TTL followed by the hash fields and values of the given cart, as expected by LOAD.
+  private List<String> toFields(CartEntity cartEntity) {
+    List<String> fields = new ArrayList<>();
+    fields.add(String.valueOf(ttlSeconds));
+    int count = 0;
+    for (Map.Entry<String, CartItemEntity> line : cartEntity.getLines().entrySet()) {
+      Collections.addAll(fields,
+          QUANTITY_PREFIX + line.getKey(), String.valueOf(line.getValue().getQuantity()),
+          DETAILS_PREFIX + line.getKey(), toJson(line.getValue().toItem(line.getKey())));
+      count += line.getValue().getQuantity();
+    }
+    // A missing restaurant or user is left out of the hash, so that it is flushed back as null.
+    if (cartEntity.getRestaurantId() != null) {
+      Collections.addAll(fields, RESTAURANT_ID_FIELD, cartEntity.getRestaurantId());
+    }
+    if (cartEntity.getUserId() != null) {
+      Collections.addAll(fields, USER_ID_FIELD, cartEntity.getUserId());
+    }
+    Collections.addAll(fields, COUNT_FIELD, String.valueOf(count));
+    Collections.addAll(fields, VERSION_FIELD,
+        String.valueOf(cartEntity.getVersion() == null ? 0 : cartEntity.getVersion()));
+    return fields;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Cart toCart(String cartId, Object scriptResult) {
+    if (!(scriptResult instanceof List)) {
+      throw new CartNotFoundException();
+    }
+    List<String> flattened = (List<String>) scriptResult;
+    Map<String, String> fields = new HashMap<>();
+    for (int i = 0; i + 1 < flattened.size(); i += 2) {
+      fields.put(flattened.get(i), flattened.get(i + 1));
+    }
+    return toCart(cartId, fields);
+  }
+
+  private static Cart toCart(String cartId, Map<String, String> fields) {
+    return toCartEntity(cartId, fields).toCart();
+  }
+
+  // Lines are ordered by itemId, as Redis hashes do not keep the order fields were added in.
+  private static CartEntity toCartEntity(String cartId, Map<String, String> fields) {
+    CartEntity cartEntity = new CartEntity();
+    cartEntity.setId(cartId);
+    cartEntity.setRestaurantId(fields.get(RESTAURANT_ID_FIELD));
+    cartEntity.setUserId(fields.get(USER_ID_FIELD));
+    String version = fields.get(VERSION_FIELD);
+    cartEntity.setVersion(version == null ? 0 : Long.parseLong(version));
+    Map<String, CartItemEntity> lines = new TreeMap<>();
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      if (field.getKey().startsWith(QUANTITY_PREFIX)) {
+        String itemId = field.getKey().substring(QUANTITY_PREFIX.length());
+        lines.put(itemId, CartItemEntity.of(fromJson(fields.get(DETAILS_PREFIX + itemId)),
+            Integer.parseInt(field.getValue())));
+      }
+    }
+    cartEntity.setLines(new LinkedHashMap<>(lines));
+    return cartEntity;
+  }
+
+  private static String toJson(Item item) {
+    try {
+      return ITEM_WRITER.writeValueAsString(item);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Item fromJson(String json) {
+    try {
+      return ITEM_READER.readValue(json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
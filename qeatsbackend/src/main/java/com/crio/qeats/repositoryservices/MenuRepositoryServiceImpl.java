@@ -6,12 +6,10 @@
 
 package com.crio.qeats.repositoryservices;
 
+import com.crio.qeats.cache.MenuCache;
 import com.crio.qeats.dto.Menu;
 import com.crio.qeats.models.MenuEntity;
 import com.crio.qeats.repositories.MenuRepository;
-import java.util.Optional;
-import javax.inject.Provider;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -22,22 +20,17 @@ public class MenuRepositoryServiceImpl implements MenuRepositoryService {
   private MenuRepository menuRepository;
 
   @Autowired
-  private Provider<ModelMapper> modelMapperProvider;
+  private MenuCache menuCache;
 
+  // Menus are served from the in-process cache; the returned menu is shared with it.
   @Override
   public Menu findMenu(String restaurantId) {
-    ModelMapper modelMapper = modelMapperProvider.get();
-
-    Optional<MenuEntity> menuById = menuRepository.findMenuByRestaurantId(restaurantId);
-
-    Menu menu = null;
-
-    if (menuById.isPresent()) {
-      menu = modelMapper.map(menuById.get(), Menu.class);
-    }
-
-    return menu;
+    return menuCache.get(restaurantId, () -> loadMenu(restaurantId));
   }
 
-    
+  private Menu loadMenu(String restaurantId) {
+    return menuRepository.findMenuByRestaurantId(restaurantId)
+        .map(MenuEntity::toMenu)
+        .orElse(null);
+  }
 }
@@ -15,9 +15,7 @@ import com.crio.qeats.repositories.OrderRepository;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import javax.inject.Provider;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -27,21 +25,15 @@ public class OrderRepositoryServiceImpl implements OrderRepositoryService {
   @Autowired
   private OrderRepository orderRepository;
 
-  @Autowired
-  private Provider<ModelMapper> modelMapperProvider;
-
   @Override
   public Order placeOrder(Cart cart) {
-    ModelMapper modelMapper = modelMapperProvider.get();
-
-    OrderEntity order = modelMapper.map(cart, OrderEntity.class);
+    OrderEntity order = OrderEntity.fromCart(cart);
     orderRepository.save(order);
-    return modelMapper.map(order, Order.class);
+    return order.toOrder();
   }
 
   @Override
   public List<Order> getOrdersByRestaurant(String restaurantId) {
-    ModelMapper modelMapper = modelMapperProvider.get();
     List<Order> orderList = new ArrayList<>();
 
     Optional<List<OrderEntity>> optionalOrderEntityList =
@@ -49,7 +41,7 @@ public class OrderRepositoryServiceImpl implements OrderRepositoryService {
     if (optionalOrderEntityList.isPresent()) {
       List<OrderEntity> orderEntityList = optionalOrderEntityList.get();
       for (OrderEntity orderEntity : orderEntityList) {
-        orderList.add(modelMapper.map(orderEntity, Order.class));
+        orderList.add(orderEntity.toOrder());
       }
     }
     return orderList;
@@ -58,7 +50,6 @@ public class OrderRepositoryServiceImpl implements OrderRepositoryService {
   @Override
   public Order updateStatus(String restaurantId, String orderId,
                             String status) {
-    ModelMapper modelMapper = modelMapperProvider.get();
     Order order = null;
     Optional<OrderEntity> optionalOrderEntity = orderRepository.findById(orderId);
 
@@ -66,20 +57,18 @@ public class OrderRepositoryServiceImpl implements OrderRepositoryService {
       OrderEntity orderEntity = optionalOrderEntity.get();
       orderEntity.setStatus(status);
       orderRepository.save(orderEntity);
-      order = modelMapper.map(orderEntity, Order.class);
+      order = orderEntity.toOrder();
     }
     return order;
   }
 
   @Override
   public Order getOrderById(String orderId) {
-    ModelMapper modelMapper = modelMapperProvider.get();
     Order order = null;
     Optional<OrderEntity> optionalOrderEntity = orderRepository.findById(orderId);
 
     if (optionalOrderEntity.isPresent()) {
-      OrderEntity orderEntity = optionalOrderEntity.get();
-      order = modelMapper.map(orderEntity, Order.class);
+      order = optionalOrderEntity.get().toOrder();
     }
     return order;
   }
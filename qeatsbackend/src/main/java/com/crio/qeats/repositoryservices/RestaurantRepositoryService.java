@@ -9,9 +9,7 @@ package com.crio.qeats.repositoryservices;
 import com.crio.qeats.dto.Restaurant;
 import java.time.LocalTime;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
-import org.springframework.scheduling.annotation.Async;
+import java.util.function.Consumer;
 
 public interface RestaurantRepositoryService {
 
@@ -29,6 +27,35 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findAllRestaurantsCloseBy(Double latitude, Double longitude,
       LocalTime currentTime, Double servingRadiusInKms);
 
+  /**
+   * Same restaurants as @link{findAllRestaurantsCloseBy}, handed to the consumer one at a time
+   * as they are found instead of collected into a list.
+   * The restaurants may be shared with the cache: the consumer must not modify them.
+   * @param consumer called once for every open restaurant within the serving radius
+   */
+  void streamRestaurantsCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, Consumer<Restaurant> consumer);
+
+
+  /**
+   * Get the list of open restaurants within the specified serving radius matching the search
+   * string by name, attributes, item names or item attributes.
+   *   - Each restaurant is listed once, most relevant first: restaurants matching several
+   *     sources, and name matches over attribute and item matches; nearer first on ties.
+   * @param searchString Query string for restaurants
+   * @return list of restaurants
+   */
+  List<Restaurant> findRestaurantsBySearchQuery(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms);
+
+  /**
+   * Get the list of open restaurants within the specified serving radius whose whole name
+   * equals the search string, ignoring case and punctuation.
+   * @param searchString Query string for restaurants
+   * @return list of restaurants
+   */
+  List<Restaurant> findRestaurantsByNameExact(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms);
 
   /**
    * Get the list of open restaurants within the specified serving radius.
@@ -39,11 +66,6 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms);
 
-  @Async
-      CompletableFuture<List<Restaurant>> findRestaurantsByNameAsync(
-      Double latitude, Double longitude,String searchString,LocalTime currentTime,
-      Double servingRadiusInKms);
-
   /**
    * Get the list of open restaurants within the specified serving radius.
    * @param searchString Query string for item attributes
@@ -53,11 +75,6 @@ public interface RestaurantRepositoryService {
       Double latitude, Double longitude, String searchString,
       LocalTime currentTime, Double servingRadiusInKms);
 
-  @Async
-  CompletableFuture<List<Restaurant>> findRestaurantsByAttributesAsync(
-          Double latitude, Double longitude,
-          String searchString, LocalTime currentTime, Double servingRadiusInKms);
-  
   /**
    * Get the list of open restaurants within the specified serving radius which service item
    * name in search string.
@@ -68,11 +85,6 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findRestaurantsByItemName(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms);
 
-  @Async
-  CompletableFuture<List<Restaurant>> findRestaurantsByItemNameAsync(
-          Double latitude, Double longitude,
-          String searchString, LocalTime currentTime, Double servingRadiusInKms);
-
   /**
    * Get the list of open restaurants within the specified serving radius which have items of
    * specified attributes in search string.
@@ -82,11 +94,6 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms);
 
-  @Async
-  CompletableFuture<List<Restaurant>> findRestaurantsByItemAttributesAsync(
-          Double latitude, Double longitude, String searchString,
-          LocalTime currentTime, Double servingRadiusInKms);
-
 }
 
 
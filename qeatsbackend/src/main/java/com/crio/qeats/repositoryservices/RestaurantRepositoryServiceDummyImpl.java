@@ -9,10 +9,8 @@ import java.io.IOException;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
-import org.springframework.scheduling.annotation.Async;
+import java.util.function.Consumer;
 import org.springframework.stereotype.Service;
 
 public class RestaurantRepositoryServiceDummyImpl {
@@ -42,55 +40,46 @@ public class RestaurantRepositoryServiceDummyImpl {
     return restaurantList;
   }
 
-  public List<Restaurant> findRestaurantsByName(
-      Double latitude, Double longitude, String searchString,
-      LocalTime currentTime, Double servingRadiusInKms) {
-    return null;
+  public void streamRestaurantsCloseBy(
+      Double latitude, Double longitude, LocalTime currentTime,
+      Double servingRadiusInKms, Consumer<Restaurant> consumer) {
+    findAllRestaurantsCloseBy(latitude, longitude, currentTime, servingRadiusInKms)
+        .forEach(consumer);
   }
 
-  public List<Restaurant> findRestaurantsByAttributes(
+  public List<Restaurant> findRestaurantsBySearchQuery(
       Double latitude, Double longitude, String searchString,
       LocalTime currentTime, Double servingRadiusInKms) {
     return null;
   }
 
-  public List<Restaurant> findRestaurantsByItemName(
+  public List<Restaurant> findRestaurantsByNameExact(
       Double latitude, Double longitude, String searchString,
       LocalTime currentTime, Double servingRadiusInKms) {
     return null;
   }
 
-  public List<Restaurant> findRestaurantsByItemAttributes(
+  public List<Restaurant> findRestaurantsByName(
       Double latitude, Double longitude, String searchString,
       LocalTime currentTime, Double servingRadiusInKms) {
     return null;
   }
 
-  public CompletableFuture<List<Restaurant>> findRestaurantsByNameAsync(
-      Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    // TODO Auto-generated method stub
-    return null;
-  }
-
-  public CompletableFuture<List<Restaurant>> findRestaurantsByAttributesAsync(
-      Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    // TODO Auto-generated method stub
+  public List<Restaurant> findRestaurantsByAttributes(
+      Double latitude, Double longitude, String searchString,
+      LocalTime currentTime, Double servingRadiusInKms) {
     return null;
   }
 
-  public CompletableFuture<List<Restaurant>> findRestaurantsByItemNameAsync(
-      Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    // TODO Auto-generated method stub
+  public List<Restaurant> findRestaurantsByItemName(
+      Double latitude, Double longitude, String searchString,
+      LocalTime currentTime, Double servingRadiusInKms) {
     return null;
   }
 
-  public CompletableFuture<List<Restaurant>> findRestaurantsByItemAttributesAsync(
-      Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    // TODO Auto-generated method stub
+  public List<Restaurant> findRestaurantsByItemAttributes(
+      Double latitude, Double longitude, String searchString,
+      LocalTime currentTime, Double servingRadiusInKms) {
     return null;
   }
 
@@ -6,56 +6,71 @@
 
 package com.crio.qeats.repositoryservices;
 
+import ch.hsr.geohash.BoundingBox;
 import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.cache.RestaurantCell;
+import com.crio.qeats.cache.RestaurantCellCache;
+import com.crio.qeats.cache.SearchHit;
+import com.crio.qeats.cache.SearchResultCache;
+import com.crio.qeats.cache.SingleFlight;
 import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Item;
 import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.globals.GlobalConstants;
+import com.crio.qeats.index.MenuItemIndex;
+import com.crio.qeats.index.RestaurantGeoIndex;
+import com.crio.qeats.index.RestaurantTextIndex;
 import com.crio.qeats.models.ItemEntity;
 import com.crio.qeats.models.MenuEntity;
 import com.crio.qeats.models.RestaurantEntity;
-import com.crio.qeats.repositories.ItemRepository;
 import com.crio.qeats.repositories.MenuRepository;
 import com.crio.qeats.repositories.RestaurantRepository;
 import com.crio.qeats.utils.GeoLocation;
 import com.crio.qeats.utils.GeoUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
+import com.crio.qeats.utils.OpeningHours;
+import com.crio.qeats.utils.SearchTerms;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import javax.inject.Provider;
-import org.modelmapper.ModelMapper;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.BasicQuery;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
-import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
 
 @Service
 @Primary
+@Log4j2
 public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryService {
 
   @Autowired
   private RestaurantRepository restaurantRepository;
 
-  @Autowired
-  private ItemRepository itemRepository;
-
   @Autowired
   private MenuRepository menuRepository;
 
@@ -66,15 +81,51 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
   private MongoTemplate mongoTemplate;
 
   @Autowired
-  private Provider<ModelMapper> modelMapperProvider;
+  private RestaurantGeoIndex restaurantGeoIndex;
+
+  @Autowired
+  private RestaurantTextIndex restaurantTextIndex;
 
-  private static final int NUM_OF_CHARS = 7;
+  @Autowired
+  private MenuItemIndex menuItemIndex;
 
-  private boolean isOpenNow(LocalTime time, RestaurantEntity res) {
-    LocalTime openingTime = LocalTime.parse(res.getOpensAt());
-    LocalTime closingTime = LocalTime.parse(res.getClosesAt());
+  @Autowired
+  private RestaurantCellCache restaurantCellCache;
+
+  @Autowired
+  private SearchResultCache searchResultCache;
+
+  // Beyond this many cells (very large radius) the cache costs more than it saves.
+  private static final int MAX_CACHED_CELLS_PER_LOOKUP = 25;
+
+  private static final DateTimeFormatter OPENING_HOURS_FORMAT =
+      DateTimeFormatter.ofPattern("HH:mm");
+
+  // Concurrent misses on the same cell share one database load.
+  private final SingleFlight<String, RestaurantCell> cellLoads = new SingleFlight<>();
 
-    return time.isAfter(openingTime) && time.isBefore(closingTime);
+  private final Set<String> refreshingCells = ConcurrentHashMap.newKeySet();
+
+  private final ExecutorService cellRefreshExecutor = new ThreadPoolExecutor(2, 2,
+      60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64),
+      new ThreadFactoryBuilder().setNameFormat("cell-refresh-%d").setDaemon(true).build());
+
+  private boolean geoQueryEnabled = true;
+
+  private boolean geoFirstSearchEnabled = true;
+
+  @Value("${qeats.mongo.geoQuery.enabled:true}")
+  public void setGeoQueryEnabled(boolean geoQueryEnabled) {
+    this.geoQueryEnabled = geoQueryEnabled;
+  }
+
+  @Value("${qeats.search.geoFirst.enabled:true}")
+  public void setGeoFirstSearchEnabled(boolean geoFirstSearchEnabled) {
+    this.geoFirstSearchEnabled = geoFirstSearchEnabled;
+  }
+
+  private boolean isOpenNow(LocalTime time, RestaurantEntity res) {
+    return res.isOpenAt(OpeningHours.minuteOfDay(time));
   }
 
   // TODO: CRIO_TASK_MODULE_NOSQL
@@ -90,79 +141,208 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
       try {
         return findAllRestaurantsCloseFromCache(latitude, longitude, currentTime,
             servingRadiusInKms);
-      } catch (IOException e) {
-        e.printStackTrace();
+      } catch (JedisException e) {
+        log.warn("Restaurant cache unavailable, reading from the database", e);
       }
-    } else {
-      return findAllRestaurantsFromDb(latitude, longitude, currentTime, servingRadiusInKms);
     }
-    return null;
-  }
-
-  public static final double R = 6372.8; // In kilometers
-
-  private static double haversine(double lat1, double lon1, double lat2, double lon2) {
-    double differenceLat = Math.toRadians(lat2 - lat1);
-    double differenceLon = Math.toRadians(lon2 - lon1);
-    lat1 = Math.toRadians(lat1);
-    lat2 = Math.toRadians(lat2);
-
-    double a =
-        Math.pow(Math.sin(differenceLat / 2), 2) + Math.pow(Math.sin(differenceLon / 2), 2) * Math
-            .cos(lat1) * Math.cos(lat2);
-    double c = 2 * Math.asin(Math.sqrt(a));
-    return R * c;
+    return findAllRestaurantsFromDb(latitude, longitude, currentTime, servingRadiusInKms);
   }
 
   /**
    * Implement caching for restaurants closeby.
+   * Reads every geohash cell overlapping the serving radius, loads the missing ones from the
+   * database in a single pass, and filters the cached restaurants by distance and opening hours.
    */
   private List<Restaurant> findAllRestaurantsCloseFromCache(
       Double latitude, Double longitude,
-      LocalTime currentTime, Double servingRadiusInKms) throws IOException {
-
-    List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-    Jedis jedis = redisConfiguration.getJedisPool().getResource();
-
-    int timing = currentTime.getHour() * 100 + currentTime.getMinute();
-    String geoHash = GeoHash.geoHashStringWithCharacterPrecision(latitude, longitude, 
-        NUM_OF_CHARS);
-
-    //If the entry is already available in the cache, then return it from cache to save DB lookup.
-    if (jedis.exists(geoHash)) {
-      String restaurantsData = jedis.get(geoHash);
-      List<String> list = Arrays.asList(restaurantsData.split(";"));
-      for (int i = 0; i < list.size(); i++) {
-        Restaurant r = new ObjectMapper().readValue(list.get(i), Restaurant.class);
-        LocalTime opening = LocalTime.parse(r.getOpensAt());
-        LocalTime closing = LocalTime.parse(r.getClosesAt());
-
-        int openingTime = opening.getHour() * 100 + opening.getMinute();
-        int closingTime = closing.getHour() * 100 + closing.getMinute();
-        if (timing >= openingTime && timing <= closingTime) {
-          Double distance = haversine(latitude, longitude, r.getLatitude(),
-              r.getLongitude());
-          if (distance <= servingRadiusInKms) {
-            restaurantList.add(r);
-          }
+      LocalTime currentTime, Double servingRadiusInKms) {
+
+    List<String> geoHashes = GeoUtils.geoHashesCovering(latitude, longitude,
+        servingRadiusInKms, RestaurantCellCache.CELL_PRECISION);
+    if (geoHashes.size() > MAX_CACHED_CELLS_PER_LOOKUP) {
+      return findAllRestaurantsFromDb(latitude, longitude, currentTime, servingRadiusInKms);
+    }
+
+    Map<String, RestaurantCell> cells = readCells(geoHashes);
+
+    List<Restaurant> restaurantList = new ArrayList<>();
+    forEachOpenRestaurantInCells(geoHashes, cells, latitude, longitude, currentTime,
+        servingRadiusInKms, restaurant -> restaurantList.add(copyOf(restaurant)));
+    return restaurantList;
+  }
+
+  @Override
+  public void streamRestaurantsCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, Consumer<Restaurant> consumer) {
+    if (redisConfiguration.isCacheAvailable()) {
+      List<String> geoHashes = GeoUtils.geoHashesCovering(latitude, longitude,
+          servingRadiusInKms, RestaurantCellCache.CELL_PRECISION);
+      if (geoHashes.size() <= MAX_CACHED_CELLS_PER_LOOKUP) {
+        Map<String, RestaurantCell> cells = null;
+        try {
+          cells = readCells(geoHashes);
+        } catch (JedisException e) {
+          log.warn("Restaurant cache unavailable, reading from the database", e);
+        }
+        if (cells != null) {
+          forEachOpenRestaurantInCells(geoHashes, cells, latitude, longitude, currentTime,
+              servingRadiusInKms, consumer);
+          return;
         }
       }
-    } else {
-      //Whenever the entry is not there in the cache, you will have to populate it from DB.
-      restaurantList = findAllRestaurantsFromDb(latitude, longitude,
-          currentTime, servingRadiusInKms);
-      for (Restaurant r : restaurantList) {
-
-        if (jedis.exists(geoHash)) {
-          jedis.append(geoHash, ";" + r.serializeToJson());
-          jedis.expire(geoHash, RedisConfiguration.REDIS_ENTRY_EXPIRY_IN_SECONDS);
-        } else {
-          jedis.set(geoHash, r.serializeToJson());
-          jedis.expire(geoHash, RedisConfiguration.REDIS_ENTRY_EXPIRY_IN_SECONDS);
+    }
+    forEachRestaurantFromDb(latitude, longitude, currentTime, servingRadiusInKms, consumer);
+  }
+
+  private static void forEachOpenRestaurantInCells(List<String> geoHashes,
+      Map<String, RestaurantCell> cells, Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, Consumer<Restaurant> consumer) {
+    int minuteOfDay = OpeningHours.minuteOfDay(currentTime);
+    for (String geoHash : geoHashes) {
+      for (Restaurant restaurant : cells.get(geoHash).getRestaurants()) {
+        if (restaurant.isOpenAt(minuteOfDay)
+            && GeoUtils.findDistanceInKm(latitude, longitude,
+                restaurant.getLatitude(), restaurant.getLongitude()) < servingRadiusInKms) {
+          consumer.accept(restaurant);
         }
       }
     }
-    return restaurantList;
+  }
+
+  // Reads the given cells from the cache, loading the missing ones from the database and
+  // refreshing the stale ones in the background.
+  private Map<String, RestaurantCell> readCells(List<String> geoHashes) {
+    Map<String, RestaurantCell> cells = restaurantCellCache.getCells(geoHashes);
+    List<String> missingGeoHashes = geoHashes.stream()
+        .filter(geoHash -> !cells.containsKey(geoHash))
+        .collect(Collectors.toList());
+    List<String> staleGeoHashes = cells.entrySet().stream()
+        .filter(cell -> restaurantCellCache.isStale(cell.getValue()))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+    if (!staleGeoHashes.isEmpty()) {
+      refreshCellsInBackground(staleGeoHashes);
+    }
+    if (!missingGeoHashes.isEmpty()) {
+      cells.putAll(cellLoads.executeAll(missingGeoHashes, this::loadAndCacheCells));
+    }
+    return cells;
+  }
+
+  // Every restaurant located in the given cells, at any time of day, through the cell cache
+  // when it is available. The restaurants may be shared with the cache.
+  private List<Restaurant> findRestaurantsInCells(List<String> geoHashes) {
+    if (redisConfiguration.isCacheAvailable()
+        && geoHashes.size() <= MAX_CACHED_CELLS_PER_LOOKUP) {
+      try {
+        Map<String, RestaurantCell> cells = readCells(geoHashes);
+        return geoHashes.stream()
+            .flatMap(geoHash -> cells.get(geoHash).getRestaurants().stream())
+            .collect(Collectors.toList());
+      } catch (JedisException e) {
+        log.warn("Restaurant cache unavailable, reading from the database", e);
+      }
+    }
+    return loadCells(geoHashes).values().stream()
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+  }
+
+  // Cached restaurants are shared across requests, and callers are free to modify the ones
+  // they get back.
+  private static Restaurant copyOf(Restaurant restaurant) {
+    Restaurant copy = new Restaurant();
+    copy.setRestaurant(restaurant.getId(), restaurant.getRestaurantId(), restaurant.getName(),
+        restaurant.getCity(), restaurant.getImageUrl(), restaurant.getLatitude(),
+        restaurant.getLongitude(), restaurant.getOpensAt(), restaurant.getClosesAt(),
+        restaurant.getAttributes() == null ? null : new ArrayList<>(restaurant.getAttributes()));
+    return copy;
+  }
+
+  private Map<String, RestaurantCell> loadAndCacheCells(Collection<String> geoHashes) {
+    // Another request may have filled some of these cells since our lookup.
+    Map<String, RestaurantCell> cells = restaurantCellCache.getCells(geoHashes);
+    List<String> missingGeoHashes = geoHashes.stream()
+        .filter(geoHash -> !cells.containsKey(geoHash))
+        .collect(Collectors.toList());
+    if (!missingGeoHashes.isEmpty()) {
+      cells.putAll(restaurantCellCache.putCells(loadCells(missingGeoHashes)));
+    }
+    return cells;
+  }
+
+  // Stale cells keep being served while they are reloaded off the request path. A cell is
+  // refreshed by at most one task at a time; if the executor is saturated the refresh is
+  // dropped and the next read of the stale cell tries again.
+  private void refreshCellsInBackground(List<String> staleGeoHashes) {
+    List<String> claimedGeoHashes = staleGeoHashes.stream()
+        .filter(refreshingCells::add)
+        .collect(Collectors.toList());
+    if (claimedGeoHashes.isEmpty()) {
+      return;
+    }
+    try {
+      cellRefreshExecutor.execute(() -> {
+        try {
+          cellLoads.executeAll(claimedGeoHashes, geoHashes ->
+              restaurantCellCache.putCells(loadCells(new ArrayList<>(geoHashes))));
+        } catch (RuntimeException e) {
+          log.warn("Failed to refresh cached cells {}", claimedGeoHashes, e);
+        } finally {
+          refreshingCells.removeAll(claimedGeoHashes);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      refreshingCells.removeAll(claimedGeoHashes);
+    }
+  }
+
+  @PreDestroy
+  public void shutdownCellRefresh() {
+    cellRefreshExecutor.shutdownNow();
+  }
+
+  // Loads every restaurant located in the given cells, at any time of day, with one query over
+  // the box enclosing all of them.
+  private Map<String, List<Restaurant>> loadCells(List<String> geoHashes) {
+    BoundingBox boundingBox = null;
+    Map<String, List<Restaurant>> cells = new HashMap<>();
+    for (String geoHash : geoHashes) {
+      BoundingBox cell = GeoHash.fromGeohashString(geoHash).getBoundingBox();
+      if (boundingBox == null) {
+        boundingBox = new BoundingBox(cell);
+      } else {
+        boundingBox.expandToInclude(cell);
+      }
+      cells.put(geoHash, new ArrayList<>());
+    }
+
+    for (RestaurantEntity entity : findRestaurantsWithin(boundingBox)) {
+      if (entity.getLatitude() == null || entity.getLongitude() == null) {
+        continue;
+      }
+      List<Restaurant> cell = cells.get(GeoHash.geoHashStringWithCharacterPrecision(
+          entity.getLatitude(), entity.getLongitude(), RestaurantCellCache.CELL_PRECISION));
+      if (cell != null) {
+        cell.add(entity.toRestaurant());
+      }
+    }
+    cells.values().forEach(cell -> cell.sort(RestaurantCellCache.CELL_ORDER));
+    return cells;
+  }
+
+  private List<RestaurantEntity> findRestaurantsWithin(BoundingBox boundingBox) {
+    if (restaurantGeoIndex.isReady()) {
+      return restaurantGeoIndex.findCandidatesWithin(boundingBox.getMinLat(),
+          boundingBox.getMaxLat(), boundingBox.getMinLon(), boundingBox.getMaxLon());
+    }
+    if (geoQueryEnabled) {
+      return restaurantRepository
+          .findRestaurantsWithin(boundingBox.getMinLat(), boundingBox.getMaxLat(),
+              boundingBox.getMinLon(), boundingBox.getMaxLon())
+          .orElseGet(ArrayList::new);
+    }
+    return restaurantRepository.findAll();
   }
 
   private List<Restaurant> findAllRestaurantsFromDb(Double latitude,
@@ -171,79 +351,227 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
         Double servingRadiusInKms) {
 
     List<Restaurant> restaurantList = new ArrayList<>();
-    ModelMapper mapper = modelMapperProvider.get();
-    List<RestaurantEntity> restaurantEntityList = restaurantRepository.findAll();
+    List<RestaurantEntity> restaurantEntityList =
+        findCandidatesCloseBy(latitude, longitude, currentTime, servingRadiusInKms);
 
     for (RestaurantEntity entity : restaurantEntityList) {
       if (isRestaurantCloseByAndOpen(entity, currentTime, latitude, longitude, 
           servingRadiusInKms)) {
-        restaurantList.add(mapper.map(entity, Restaurant.class));
+        restaurantList.add(entity.toRestaurant());
       }
     }
     return restaurantList;
 
   }
 
-  // Find restaurants whose names have an exact or partial match with the search query.
+  // Same as findAllRestaurantsFromDb, handing each restaurant over as soon as it is read. Mongo
+  // results are read through a cursor rather than collected first.
+  private void forEachRestaurantFromDb(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, Consumer<Restaurant> consumer) {
+    Consumer<RestaurantEntity> emit = entity -> {
+      if (isRestaurantCloseByAndOpen(entity, currentTime, latitude, longitude,
+          servingRadiusInKms)) {
+        consumer.accept(entity.toRestaurant());
+      }
+    };
+    if (!restaurantGeoIndex.isReady() && geoQueryEnabled) {
+      try (Stream<RestaurantEntity> entities = restaurantRepository.streamOpenRestaurantsNear(
+          latitude, longitude, servingRadiusInKms * 1000,
+          currentTime.format(OPENING_HOURS_FORMAT))) {
+        entities.forEach(emit);
+      }
+      return;
+    }
+    findCandidatesCloseBy(latitude, longitude, currentTime, servingRadiusInKms).forEach(emit);
+  }
+
+  // Only the grid cells overlapping the serving radius need to be checked once the in-memory
+  // index is built. Until then let Mongo do the radius and opening hours filtering through the
+  // 2dsphere index, and scan the whole collection only if geo queries are turned off.
+  private List<RestaurantEntity> findCandidatesCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms) {
+    if (restaurantGeoIndex.isReady()) {
+      return restaurantGeoIndex.findCandidatesCloseBy(latitude, longitude, servingRadiusInKms);
+    }
+    if (geoQueryEnabled) {
+      return restaurantRepository
+          .findOpenRestaurantsNear(latitude, longitude, servingRadiusInKms * 1000,
+              currentTime.format(OPENING_HOURS_FORMAT))
+          .orElseGet(ArrayList::new);
+    }
+    return restaurantRepository.findAll();
+  }
+
+  // Ranks the cached matches of the user's cell for this query. The matches are computed once
+  // per cell, query and radius, regardless of opening hours, and finished per request with the
+  // exact distance and opening hours checks.
   @Override
-  public List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
+  public List<Restaurant> findRestaurantsBySearchQuery(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    ModelMapper modelMapper = modelMapperProvider.get();
-    Set<String> restaurantSet = new HashSet<>();
-    List<Restaurant> restaurantList = new ArrayList<>();
-    Optional<List<RestaurantEntity>> optionalExactRestaurantEntityList
-        = restaurantRepository.findRestaurantsByNameExact(searchString);
-    if (optionalExactRestaurantEntityList.isPresent()) {
-      List<RestaurantEntity> restaurantEntityList =
-          optionalExactRestaurantEntityList.get();
-      for (RestaurantEntity restaurantEntity : restaurantEntityList) {
-        if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,
-            latitude, longitude, servingRadiusInKms)
-            && !restaurantSet.contains(restaurantEntity.getRestaurantId())) {
-          restaurantList.add(modelMapper.map(restaurantEntity,
-              Restaurant.class));
-          restaurantSet.add(restaurantEntity.getRestaurantId());
-        }
+    if (SearchTerms.tokenize(searchString).isEmpty()) {
+      return new ArrayList<>();
+    }
+    String geoHash = GeoHash.geoHashStringWithCharacterPrecision(latitude, longitude,
+        RestaurantCellCache.CELL_PRECISION);
+    List<SearchHit> hits = searchResultCache.get(
+        SearchResultCache.key(searchString, geoHash, servingRadiusInKms),
+        () -> findSearchHits(geoHash, searchString, servingRadiusInKms));
+
+    SearchCandidates<Restaurant> candidates = SearchCandidates.ofRestaurants();
+    for (SearchHit hit : hits) {
+      candidates.add(hit.getRestaurant(), hit.getScore());
+    }
+    return candidates.rank(latitude, longitude, currentTime, servingRadiusInKms).stream()
+        .map(RestaurantRepositoryServiceImpl::copyOf)
+        .collect(Collectors.toList());
+  }
+
+  // Every restaurant matching the query within the serving radius of some point of the cell,
+  // at any time of day, with its score.
+  private List<SearchHit> findSearchHits(String geoHash, String searchString,
+      double servingRadiusInKms) {
+    BoundingBox cell = GeoHash.fromGeohashString(geoHash).getBoundingBox();
+    WGS84Point centre = cell.getCenterPoint();
+    double reachInKms = servingRadiusInKms + GeoUtils.findDistanceInKm(centre.getLatitude(),
+        centre.getLongitude(), cell.getMaxLat(), cell.getMaxLon());
+    if (geoFirstSearchEnabled) {
+      return matchRestaurantsNear(centre.getLatitude(), centre.getLongitude(), reachInKms,
+          searchString);
+    }
+    return matchAllRestaurants(centre.getLatitude(), centre.getLongitude(), reachInKms,
+        searchString);
+  }
+
+  // Merges every search source over the whole catalog. Item matches are resolved to
+  // restaurants with a single lookup, and only the restaurants within reach are mapped.
+  private List<SearchHit> matchAllRestaurants(double latitude, double longitude,
+      double reachInKms, String searchString) {
+
+    SearchCandidates<RestaurantEntity> candidates = SearchCandidates.ofEntities();
+    candidates.add(findRestaurantEntitiesByNameExact(searchString),
+        SearchCandidates.EXACT_NAME_SCORE);
+    candidates.add(findRestaurantEntitiesByName(searchString), SearchCandidates.NAME_SCORE);
+    candidates.add(findRestaurantEntitiesByAttributes(searchString),
+        SearchCandidates.ATTRIBUTE_SCORE);
+
+    List<String> itemNameMatches = findRestaurantIdsByItemName(searchString);
+    List<String> itemAttributeMatches = findRestaurantIdsByItemAttributes(searchString);
+    Set<String> restaurantIds = new LinkedHashSet<>(itemNameMatches);
+    restaurantIds.addAll(itemAttributeMatches);
+    Map<String, RestaurantEntity> restaurantsServingItems = new HashMap<>();
+    for (RestaurantEntity restaurant : findRestaurantsByIds(new ArrayList<>(restaurantIds))) {
+      restaurantsServingItems.putIfAbsent(restaurant.getRestaurantId(), restaurant);
+    }
+    candidates.add(lookup(restaurantsServingItems, itemNameMatches),
+        SearchCandidates.ITEM_NAME_SCORE);
+    candidates.add(lookup(restaurantsServingItems, itemAttributeMatches),
+        SearchCandidates.ITEM_ATTRIBUTE_SCORE);
+
+    return candidates.scored((restaurant, score) ->
+        restaurant.getLatitude() != null && restaurant.getLongitude() != null
+            && GeoUtils.findDistanceInKm(latitude, longitude, restaurant.getLatitude(),
+                restaurant.getLongitude()) < reachInKms
+            ? new SearchHit(restaurant.toRestaurant(), score) : null);
+  }
+
+  // Geo-first search: reads the restaurants within reach through the cell cache, then matches
+  // the query against just those restaurants and their menus in memory, with the same term
+  // prefix rule and scores as the indexes.
+  private List<SearchHit> matchRestaurantsNear(double latitude, double longitude,
+      double reachInKms, String searchString) {
+
+    List<String> queryTerms = SearchTerms.tokenize(searchString);
+    String exactName = String.join(" ", queryTerms);
+    List<Restaurant> exactNameMatches = new ArrayList<>();
+    List<Restaurant> nameMatches = new ArrayList<>();
+    List<Restaurant> attributeMatches = new ArrayList<>();
+    Map<String, Restaurant> nearby = new HashMap<>();
+    List<String> geoHashes = GeoUtils.geoHashesCovering(latitude, longitude, reachInKms,
+        RestaurantCellCache.CELL_PRECISION);
+    for (Restaurant restaurant : findRestaurantsInCells(geoHashes)) {
+      if (GeoUtils.findDistanceInKm(latitude, longitude, restaurant.getLatitude(),
+          restaurant.getLongitude()) >= reachInKms) {
+        continue;
+      }
+      nearby.putIfAbsent(restaurant.getRestaurantId(), restaurant);
+      if (exactName.equals(SearchTerms.normalize(restaurant.getName()))) {
+        exactNameMatches.add(restaurant);
+      }
+      if (SearchTerms.matchesAll(queryTerms, Collections.singletonList(restaurant.getName()))) {
+        nameMatches.add(restaurant);
+      }
+      if (SearchTerms.matchesAll(queryTerms, restaurant.getAttributes())) {
+        attributeMatches.add(restaurant);
       }
-    }   
-    Optional<List<RestaurantEntity>> optionalInexactRestaurantEntityList
-        = restaurantRepository.findRestaurantsByName(searchString);
-    if (optionalInexactRestaurantEntityList.isPresent()) {
-      List<RestaurantEntity> restaurantEntityList =
-          optionalInexactRestaurantEntityList.get();
-      for (RestaurantEntity restaurantEntity : restaurantEntityList) {
-        if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,
-            latitude, longitude, servingRadiusInKms)
-            && !restaurantSet.contains(restaurantEntity.getRestaurantId())) {
-          restaurantList.add(modelMapper.map(restaurantEntity,
-              Restaurant.class));
-          restaurantSet.add(restaurantEntity.getRestaurantId());
+    }
+    if (nearby.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    List<Restaurant> itemNameMatches = new ArrayList<>();
+    List<Restaurant> itemAttributeMatches = new ArrayList<>();
+    for (MenuEntity menu : findMenus(nearby.keySet())) {
+      Restaurant restaurant = nearby.get(menu.getRestaurantId());
+      if (restaurant == null || menu.getItems() == null) {
+        continue;
+      }
+      for (Item item : menu.getItems()) {
+        if (SearchTerms.matchesAll(queryTerms, Collections.singletonList(item.getName()))) {
+          itemNameMatches.add(restaurant);
+        }
+        if (SearchTerms.matchesAll(queryTerms, item.getAttributes())) {
+          itemAttributeMatches.add(restaurant);
         }
       }
     }
-    return restaurantList;
+
+    SearchCandidates<Restaurant> candidates = SearchCandidates.ofRestaurants();
+    candidates.add(exactNameMatches, SearchCandidates.EXACT_NAME_SCORE);
+    candidates.add(nameMatches, SearchCandidates.NAME_SCORE);
+    candidates.add(attributeMatches, SearchCandidates.ATTRIBUTE_SCORE);
+    candidates.add(itemNameMatches, SearchCandidates.ITEM_NAME_SCORE);
+    candidates.add(itemAttributeMatches, SearchCandidates.ITEM_ATTRIBUTE_SCORE);
+    return candidates.scored(SearchHit::new);
+  }
+
+  // Menus of the given restaurants, from the item index once it is built, otherwise with a
+  // single batched query.
+  private List<MenuEntity> findMenus(Collection<String> restaurantIds) {
+    if (menuItemIndex.isReady()) {
+      return menuItemIndex.findMenus(restaurantIds);
+    }
+    return menuRepository.findMenusByRestaurantIdIn(restaurantIds).orElseGet(ArrayList::new);
+  }
+
+  private static List<RestaurantEntity> lookup(Map<String, RestaurantEntity> restaurants,
+      List<String> restaurantIds) {
+    return restaurantIds.stream()
+        .map(restaurants::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
   }
 
+  // Find restaurants whose whole name equals the search query, ignoring case and punctuation.
   @Override
-  @Async
-  public CompletableFuture<List<Restaurant>> findRestaurantsByNameAsync(
-      Double latitude, Double longitude, String searchString, LocalTime currentTime,
-      Double servingRadiusInKms) {
-    BasicQuery query = new BasicQuery("{name: {$regex: /" + searchString + "/i}}");
-    ModelMapper modelMapper = modelMapperProvider.get();
-    List<RestaurantEntity> restaurants = mongoTemplate
-        .find(query, RestaurantEntity.class, "restaurants");
-    List<Restaurant> restaurantList = new ArrayList<Restaurant>();
+  public List<Restaurant> findRestaurantsByNameExact(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    for (RestaurantEntity restaurant : restaurants) {
+    return toRestaurantsCloseByAndOpen(findRestaurantEntitiesByNameExact(searchString),
+        latitude, longitude, currentTime, servingRadiusInKms);
+  }
 
-      if (isRestaurantCloseByAndOpen(restaurant, currentTime,
-          latitude, longitude, servingRadiusInKms)) {
-        restaurantList.add(modelMapper.map(restaurant, Restaurant.class));
-      }
-    }
-    return CompletableFuture.completedFuture(restaurantList);
+  // Find restaurants whose names have an exact or partial match with the search query.
+  // Exact matches come first.
+  @Override
+  public List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+
+    List<RestaurantEntity> candidates = new ArrayList<>();
+    candidates.addAll(findRestaurantEntitiesByNameExact(searchString));
+    candidates.addAll(findRestaurantEntitiesByName(searchString));
+    return toRestaurantsCloseByAndOpen(candidates, latitude, longitude, currentTime,
+        servingRadiusInKms);
   }
 
   // Find restaurants whose attributes (cuisines) intersect with the search query.
@@ -252,40 +580,69 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
       Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    BasicQuery query = new BasicQuery("{attributes: {$regex: /" + searchString + "/i}}");
-    List<RestaurantEntity> restaurants = mongoTemplate
-        .find(query, RestaurantEntity.class, "restaurants");
-    List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-    ModelMapper modelMapper = modelMapperProvider.get();
-    for (RestaurantEntity restaurant : restaurants) {
+    return toRestaurantsCloseByAndOpen(findRestaurantEntitiesByAttributes(searchString),
+        latitude, longitude, currentTime, servingRadiusInKms);
+  }
 
-      if (isRestaurantCloseByAndOpen(restaurant, currentTime,
-          latitude, longitude, servingRadiusInKms)) {
-        restaurantList.add(modelMapper.map(restaurant, Restaurant.class));
-      }
+  // The database fallbacks below apply the same rules as the text index, so that results do
+  // not change once it is built.
+  private List<RestaurantEntity> findRestaurantEntitiesByNameExact(String searchString) {
+    if (restaurantTextIndex.isReady()) {
+      return restaurantTextIndex.findByNameExact(searchString);
+    }
+    List<String> terms = SearchTerms.tokenize(searchString);
+    if (terms.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Query query = Query.query(Criteria.where("name").regex(SearchTerms.exactPattern(terms)));
+    return mongoTemplate.find(query, RestaurantEntity.class, "restaurants");
+  }
 
+  private List<RestaurantEntity> findRestaurantEntitiesByName(String searchString) {
+    if (restaurantTextIndex.isReady()) {
+      return restaurantTextIndex.findByName(searchString);
     }
-    return restaurantList;
+    return findRestaurantsMatching("name", searchString);
   }
 
-  @Override
-  @Async
-  public CompletableFuture<List<Restaurant>> findRestaurantsByAttributesAsync(
-      Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    BasicQuery query = new BasicQuery("{attributes: {$regex: /" + searchString + "/i}}");
-    ModelMapper modelMapper = modelMapperProvider.get();
-    List<RestaurantEntity> restaurants = mongoTemplate
-        .find(query, RestaurantEntity.class, "restaurants");
-    List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-    for (RestaurantEntity restaurant : restaurants) {
-
-      if (isRestaurantCloseByAndOpen(restaurant, currentTime,
-          latitude, longitude, servingRadiusInKms)) {
-        restaurantList.add(modelMapper.map(restaurant, Restaurant.class));
+  private List<RestaurantEntity> findRestaurantEntitiesByAttributes(String searchString) {
+    if (restaurantTextIndex.isReady()) {
+      return restaurantTextIndex.findByAttributes(searchString);
+    }
+    return findRestaurantsMatching("attributes", searchString);
+  }
+
+  private List<RestaurantEntity> findRestaurantsMatching(String field, String searchString) {
+    List<String> terms = SearchTerms.tokenize(searchString);
+    if (terms.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return mongoTemplate.find(Query.query(matchingEveryTerm(field, terms)),
+        RestaurantEntity.class, "restaurants");
+  }
+
+  // Documents in which every term starts a term of the given field, ignoring case. The terms
+  // are matched literally, never interpreted as a regular expression or as query syntax.
+  private static Criteria matchingEveryTerm(String field, List<String> terms) {
+    return new Criteria().andOperator(terms.stream()
+        .map(term -> Criteria.where(field).regex(SearchTerms.prefixPattern(term)))
+        .toArray(Criteria[]::new));
+  }
+
+  // Maps the candidates open at currentTime within the serving radius, in order, keeping the
+  // first occurrence of each restaurant.
+  private List<Restaurant> toRestaurantsCloseByAndOpen(List<RestaurantEntity> candidates,
+      Double latitude, Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
+    Set<String> restaurantIds = new HashSet<>();
+    List<Restaurant> restaurantList = new ArrayList<>();
+    for (RestaurantEntity restaurantEntity : candidates) {
+      if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,
+          latitude, longitude, servingRadiusInKms)
+          && restaurantIds.add(restaurantEntity.getRestaurantId())) {
+        restaurantList.add(restaurantEntity.toRestaurant());
       }
     }
-    return CompletableFuture.completedFuture(restaurantList);
+    return restaurantList;
   }
 
   // Find restaurants which serve food items whose names form a complete or partial match
@@ -295,141 +652,78 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
       Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    String regex = String.join("|", Arrays.asList(searchString.split(" ")));
-    Optional<List<ItemEntity>> optionalExactItems
-        = itemRepository.findItemsByNameExact(searchString);
-    Optional<List<ItemEntity>> optionalInexactItems
-        = itemRepository.findItemsByNameInexact(regex);
-    List<ItemEntity> itemEntityList =
-        optionalExactItems.orElseGet(ArrayList:: new);
-    List<ItemEntity> inexactItemEntityList =
-        optionalInexactItems.orElseGet(ArrayList:: new);
-    itemEntityList.addAll(inexactItemEntityList);
-    return getRestaurantListServingItems(latitude, longitude,
-        currentTime, servingRadiusInKms,
-        itemEntityList);
+    return toRestaurantsCloseByAndOpen(
+        findRestaurantsByIds(findRestaurantIdsByItemName(searchString)),
+        latitude, longitude, currentTime, servingRadiusInKms);
   }
 
+  // Find restaurants which serve food items whose attributes intersect with the search query.
   @Override
-  @Async
-  public CompletableFuture<List<Restaurant>> findRestaurantsByItemNameAsync(
-      Double latitude, Double longitude,
+  public List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    BasicQuery query = new BasicQuery("{'items.name': {$regex: /" + searchString + "/i}}");
-    ModelMapper modelMapper = modelMapperProvider.get();
-    List<MenuEntity> menus = mongoTemplate.find(query, MenuEntity.class, "menus");
-    List<RestaurantEntity> restaurants = new ArrayList<>();
-    for (MenuEntity menu : menus) {
-      String restaurantId = menu.getRestaurantId();
-      BasicQuery restaurantQuery = new BasicQuery("{restaurantId:" + restaurantId + "}");
-      restaurants.add(mongoTemplate
-          .findOne(restaurantQuery, RestaurantEntity.class, "restaurants"));
-    }
-    List<Restaurant> restaurantList = new ArrayList<Restaurant>();
 
-    for (RestaurantEntity restaurant : restaurants) {
-
-      if (isRestaurantCloseByAndOpen(restaurant, currentTime,
-          latitude, longitude, servingRadiusInKms)) {
-        restaurantList.add(modelMapper.map(restaurant, Restaurant.class));
-
-      }
-
-    }
-    return CompletableFuture.completedFuture(restaurantList);
+    return toRestaurantsCloseByAndOpen(
+        findRestaurantsByIds(findRestaurantIdsByItemAttributes(searchString)),
+        latitude, longitude, currentTime, servingRadiusInKms);
   }
 
-  // Find restaurants which serve food items whose attributes intersect with the search query.
-  @Override
-  public List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    
-    List<Pattern> patterns = Arrays
-        .stream(searchString.split(" "))
-        .map(attr -> Pattern.compile(attr, Pattern.CASE_INSENSITIVE))
-        .collect(Collectors.toList());
-    Query query = new Query();
-    for (Pattern pattern : patterns) {
-      query.addCriteria(
-          Criteria.where("attributes").regex(pattern));
+  // Without the item index, items are matched in the database with the index's rules: exact
+  // item names first, then items in which every search term starts a term of the field.
+  private List<String> findRestaurantIdsByItemName(String searchString) {
+    if (menuItemIndex.isReady()) {
+      return menuItemIndex.findRestaurantIdsByItemName(searchString);
+    }
+    List<String> terms = SearchTerms.tokenize(searchString);
+    if (terms.isEmpty()) {
+      return new ArrayList<>();
     }
-    List<ItemEntity> itemEntityList = mongoTemplate.find(query,
+    List<ItemEntity> itemEntityList = mongoTemplate.find(
+        Query.query(Criteria.where("name").regex(SearchTerms.exactPattern(terms))),
         ItemEntity.class);
-    return getRestaurantListServingItems(latitude, longitude,
-        currentTime, servingRadiusInKms,
-        itemEntityList);
+    itemEntityList.addAll(
+        mongoTemplate.find(Query.query(matchingEveryTerm("name", terms)), ItemEntity.class));
+    return findRestaurantIdsServingItems(itemEntityList);
   }
 
-  @Override
-  @Async
-  public CompletableFuture<List<Restaurant>> findRestaurantsByItemAttributesAsync(
-      Double latitude, Double longitude, String searchString,
-      LocalTime currentTime, Double servingRadiusInKms) {
-    BasicQuery query = new BasicQuery("{'items.attributes': {$regex: /" + searchString + "/i}}");
-    ModelMapper modelMapper = modelMapperProvider.get();
-    List<MenuEntity> menus = mongoTemplate.find(query, MenuEntity.class, "menus");
-    List<RestaurantEntity> restaurants = new ArrayList<>();
-    for (MenuEntity menu : menus) {
-      String restaurantId = menu.getRestaurantId();
-      BasicQuery restaurantQuery = new BasicQuery("{restaurantId:" + restaurantId + "}");
-      restaurants.add(mongoTemplate
-          .findOne(restaurantQuery, RestaurantEntity.class, "restaurants"));
+  private List<String> findRestaurantIdsByItemAttributes(String searchString) {
+    if (menuItemIndex.isReady()) {
+      return menuItemIndex.findRestaurantIdsByItemAttributes(searchString);
     }
-    List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-
-    for (RestaurantEntity restaurant : restaurants) {
-
-      if (isRestaurantCloseByAndOpen(restaurant, currentTime,
-          latitude, longitude, servingRadiusInKms)) {
-        restaurantList.add(modelMapper.map(restaurant, Restaurant.class));
-
-      }
-
+    List<String> terms = SearchTerms.tokenize(searchString);
+    if (terms.isEmpty()) {
+      return new ArrayList<>();
     }
-    return CompletableFuture.completedFuture(restaurantList);
+    return findRestaurantIdsServingItems(mongoTemplate.find(
+        Query.query(matchingEveryTerm("attributes", terms)), ItemEntity.class));
   }
 
-  private List<Restaurant> getRestaurantListServingItems(Double
-      latitude, Double longitude,
-      LocalTime currentTime, Double servingRadiusInKms, List<ItemEntity>
-      itemEntityList) {
+  private List<String> findRestaurantIdsServingItems(List<ItemEntity> itemEntityList) {
+    if (itemEntityList.isEmpty()) {
+      return new ArrayList<>();
+    }
     List<String> itemIdList = itemEntityList
         .stream()
         .map(ItemEntity::getItemId)
         .collect(Collectors.toList());
-    Optional<List<MenuEntity>> optionalMenuEntityList
-        = menuRepository.findMenusByItemsItemIdIn(itemIdList);
-    Optional<List<RestaurantEntity>> optionalRestaurantEntityList =
-        Optional.empty();
-    if (optionalMenuEntityList.isPresent()) {
-      List<MenuEntity> menuEntityList = optionalMenuEntityList.get();
-      List<String> restaurantIdList = menuEntityList
-          .stream()
-          .map(MenuEntity::getRestaurantId)
-          .collect(Collectors.toList());
-      optionalRestaurantEntityList = restaurantRepository
-.findRestaurantsByRestaurantIdIn(restaurantIdList);
+    return menuRepository.findMenusByItemsItemIdIn(itemIdList)
+        .orElseGet(ArrayList::new)
+        .stream()
+        .map(MenuEntity::getRestaurantId)
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  // Resolves restaurantIds from the in-memory catalog once it is built, otherwise with a
+  // single batched query.
+  private List<RestaurantEntity> findRestaurantsByIds(List<String> restaurantIds) {
+    if (restaurantIds.isEmpty()) {
+      return new ArrayList<>();
     }
-    List<Restaurant> restaurantList = new ArrayList<>();
-    ModelMapper modelMapper = modelMapperProvider.get();
-    if (optionalRestaurantEntityList.isPresent()) {
-      List<RestaurantEntity> restaurantEntityList =
-          optionalRestaurantEntityList.get();
-
-      List<RestaurantEntity> restaurantEntitiesFiltered = new ArrayList<>();
-      for (RestaurantEntity restaurantEntity : restaurantEntityList) {
-        if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,
-            latitude, longitude,
-            servingRadiusInKms)) {
-          restaurantEntitiesFiltered.add(restaurantEntity);
-        }
-      }
-      restaurantList = restaurantEntitiesFiltered.stream()
-.map(restaurantEntity -> modelMapper.map(restaurantEntity,
-Restaurant.class))
-.collect(Collectors.toList());
+    if (restaurantTextIndex.isReady()) {
+      return restaurantTextIndex.findByRestaurantIds(restaurantIds);
     }
-    return restaurantList;
+    return restaurantRepository.findRestaurantsByRestaurantIdIn(restaurantIds)
+        .orElseGet(ArrayList::new);
   }
 
   /**
@@ -0,0 +1,140 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.GeoUtils;
+import com.crio.qeats.utils.OpeningHours;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Restaurants matched by the search sources of one query, each with the sum of the scores of
+ * the sources that matched it. A restaurant found by several sources is kept once, so the
+ * opening hours and distance checks run once per distinct restaurant.
+ */
+public class SearchCandidates<T> {
+
+  // Relevance of each search source. A restaurant matched by several sources, e.g. both by
+  // exact and by partial name, adds up their scores.
+  public static final int EXACT_NAME_SCORE = 8;
+  public static final int NAME_SCORE = 4;
+  public static final int ATTRIBUTE_SCORE = 2;
+  public static final int ITEM_NAME_SCORE = 2;
+  public static final int ITEM_ATTRIBUTE_SCORE = 1;
+
+  private final Function<T, String> restaurantIdOf;
+  private final Function<T, Double> latitudeOf;
+  private final Function<T, Double> longitudeOf;
+  private final BiPredicate<T, Integer> isOpenAt;
+
+  private final Map<String, Candidate<T>> candidates = new LinkedHashMap<>();
+
+  private SearchCandidates(Function<T, String> restaurantIdOf, Function<T, Double> latitudeOf,
+      Function<T, Double> longitudeOf, BiPredicate<T, Integer> isOpenAt) {
+    this.restaurantIdOf = restaurantIdOf;
+    this.latitudeOf = latitudeOf;
+    this.longitudeOf = longitudeOf;
+    this.isOpenAt = isOpenAt;
+  }
+
+  static SearchCandidates<RestaurantEntity> ofEntities() {
+    return new SearchCandidates<>(RestaurantEntity::getRestaurantId,
+        RestaurantEntity::getLatitude, RestaurantEntity::getLongitude,
+        RestaurantEntity::isOpenAt);
+  }
+
+  public static SearchCandidates<Restaurant> ofRestaurants() {
+    return new SearchCandidates<>(Restaurant::getRestaurantId,
+        Restaurant::getLatitude, Restaurant::getLongitude, Restaurant::isOpenAt);
+  }
+
+  // Adds the score to every restaurant, once per restaurant even if it is listed twice.
+  public void add(Collection<T> restaurants, int score) {
+    Set<String> scored = new HashSet<>();
+    for (T restaurant : restaurants) {
+      String restaurantId = restaurantIdOf.apply(restaurant);
+      if (restaurantId != null && scored.add(restaurantId)) {
+        candidates.computeIfAbsent(restaurantId, id -> new Candidate<>(restaurant)).score += score;
+      }
+    }
+  }
+
+  void add(T restaurant, int score) {
+    add(Collections.singletonList(restaurant), score);
+  }
+
+  /**
+   * Every candidate with its total score, in the order in which the candidates were first
+   * found. Candidates the mapper maps to null are left out.
+   */
+  <R> List<R> scored(BiFunction<T, Integer, R> mapper) {
+    List<R> scored = new ArrayList<>(candidates.size());
+    for (Candidate<T> candidate : candidates.values()) {
+      R mapped = mapper.apply(candidate.restaurant, candidate.score);
+      if (mapped != null) {
+        scored.add(mapped);
+      }
+    }
+    return scored;
+  }
+
+  /**
+   * Candidates open at the given time within the serving radius, highest score first, then
+   * nearest first. Ties keep the order in which the candidates were first found.
+   */
+  public List<T> rank(Double latitude, Double longitude, LocalTime currentTime,
+      Double servingRadiusInKms) {
+    int minuteOfDay = OpeningHours.minuteOfDay(currentTime);
+    List<Candidate<T>> matches = new ArrayList<>();
+    for (Candidate<T> candidate : candidates.values()) {
+      T restaurant = candidate.restaurant;
+      Double restaurantLatitude = latitudeOf.apply(restaurant);
+      Double restaurantLongitude = longitudeOf.apply(restaurant);
+      if (restaurantLatitude == null || restaurantLongitude == null
+          || !isOpenAt.test(restaurant, minuteOfDay)) {
+        continue;
+      }
+      candidate.distanceInKms = GeoUtils.findDistanceInKm(latitude, longitude,
+          restaurantLatitude, restaurantLongitude);
+      if (candidate.distanceInKms < servingRadiusInKms) {
+        matches.add(candidate);
+      }
+    }
+    matches.sort(Comparator.comparingInt((Candidate<T> candidate) -> -candidate.score)
+        .thenComparingDouble(candidate -> candidate.distanceInKms));
+
+    List<T> ranked = new ArrayList<>(matches.size());
+    for (Candidate<T> candidate : matches) {
+      ranked.add(candidate.restaurant);
+    }
+    return ranked;
+  }
+
+  private static final class Candidate<T> {
+
+    private final T restaurant;
+    private int score;
+    private double distanceInKms;
+
+    private Candidate(T restaurant) {
+      this.restaurant = restaurant;
+    }
+  }
+}
@@ -65,15 +65,16 @@ public class CartAndOrderServiceImpl implements CartAndOrderService {
       throws ItemNotFromSameRestaurantException, CartNotFoundException {
     CartModifiedResponse response = new CartModifiedResponse();
     try {
-      Cart cart = cartRepositoryService.findCartByCartId(cartId);
-      if (cart.getRestaurantId().equals(restaurantId)) {
-        Item item = menuService.findItem(itemId, restaurantId);
+      // The restaurant check is part of the atomic update, so the cart is only read again when
+      // the item was refused.
+      Item item = menuService.findItem(itemId, restaurantId);
+      try {
         Cart updatedCart = cartRepositoryService.addItem(item, cartId, restaurantId);
         response.setCart(updatedCart);
         response.setCartResponseType(0);
-      } else {
-        response.setCart(cart);
-        response.setCartResponseType(new ItemNotFromSameRestaurantException().getErrorType());
+      } catch (ItemNotFromSameRestaurantException e) {
+        response.setCart(cartRepositoryService.findCartByCartId(cartId));
+        response.setCartResponseType(e.getErrorType());
       }
     } catch (CartNotFoundException e) {
       System.out.println("Cart Not Found: " + e);
@@ -103,6 +104,8 @@ public class CartAndOrderServiceImpl implements CartAndOrderService {
   @Override
   public Order postOrder(String cartId) throws EmptyCartException {
     try {
+      // The cart store may write carts back lazily; the ordered cart must be in the database.
+      cartRepositoryService.flushCart(cartId);
       Cart cart = cartRepositoryService.findCartByCartId(cartId);
       if (!cart.getItems().isEmpty()) {
         Order order = orderRepositoryService.placeOrder(cart);
@@ -10,6 +10,7 @@ package com.crio.qeats.services;
 import com.crio.qeats.dto.Item;
 import com.crio.qeats.exceptions.ItemNotFoundInRestaurantMenuException;
 import com.crio.qeats.exchanges.GetMenuResponse;
+import java.util.concurrent.CompletableFuture;
 
 public interface MenuService {
 
@@ -20,6 +21,13 @@ public interface MenuService {
    */
   GetMenuResponse findMenu(String restaurantId);
 
+  /**
+   * Identical to @link{findMenu}, without blocking the caller.
+   * @param restaurantId id of the restaurant
+   * @return completes with the restaurant's menu
+   */
+  CompletableFuture<GetMenuResponse> findMenuAsync(String restaurantId);
+
   /**
    * Find the item in the restaurant using restaurantId/itemId and return the item if found.
    * @param itemId id of the item
@@ -11,7 +11,9 @@ import com.crio.qeats.dto.Item;
 import com.crio.qeats.dto.Menu;
 import com.crio.qeats.exceptions.ItemNotFoundInRestaurantMenuException;
 import com.crio.qeats.exchanges.GetMenuResponse;
+import com.crio.qeats.executors.SearchExecutor;
 import com.crio.qeats.repositoryservices.MenuRepositoryService;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -21,6 +23,9 @@ public class MenuServiceImpl implements MenuService {
   @Autowired
   MenuRepositoryService menuRepositoryService;
 
+  @Autowired
+  SearchExecutor searchExecutor;
+
   @Override
   public GetMenuResponse findMenu(String restaurantId) {
     GetMenuResponse getMenuResponse = new GetMenuResponse();
@@ -29,15 +34,19 @@ public class MenuServiceImpl implements MenuService {
     return getMenuResponse;
   }
 
+  @Override
+  public CompletableFuture<GetMenuResponse> findMenuAsync(String restaurantId) {
+    return searchExecutor.submit("menu", () -> findMenu(restaurantId));
+  }
+
   @Override
   public Item findItem(String itemId, String restaurantId)
       throws ItemNotFoundInRestaurantMenuException {
     Menu menu = menuRepositoryService.findMenu(restaurantId);
 
-    for (Item item : menu.getItems()) {
-      if (itemId.equals(item.getItemId())) {
-        return item;
-      }
+    Item item = menu == null ? null : menu.findItem(itemId);
+    if (item != null) {
+      return item;
     }
     throw new ItemNotFoundInRestaurantMenuException("No item found matching the itemId " + itemId);
   }
@@ -7,10 +7,13 @@
 
 package com.crio.qeats.services;
 
+import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
 import java.time.LocalTime;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 public interface RestaurantService {
 
@@ -55,15 +58,50 @@ public interface RestaurantService {
 
   /**
    * Identical input and output to @link{findRestaurantsBySearchQuery} but
-   * use a multi-threaded implementation.
+   * use a multi-threaded implementation: every source is searched concurrently, and the
+   * sources that completed by the search deadline are merged and ranked.
    * @param getRestaurantsRequest valid lat/long with searchFor string
    * @param currentTime current time
    * @return GetRestaurantsResponse object containing a list of open restaurants or an
-   *     empty list if none fits the criteria.
- * 
- * 
+   *     empty list if none fits the criteria, marked partial if some sources missed the
+   *     deadline or failed.
    */
   GetRestaurantsResponse findRestaurantsBySearchQueryMt(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) 
       throws InterruptedException, ExecutionException;
+
+  /**
+   * Identical input and output to @link{findAllRestaurantsCloseBy}, without blocking the
+   * caller.
+   * @param getRestaurantsRequest valid lat/long
+   * @param currentTime current time
+   * @return completes with the response once the restaurants are found
+   */
+  CompletableFuture<GetRestaurantsResponse> findAllRestaurantsCloseByAsync(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime);
+
+  /**
+   * Identical input and output to @link{findRestaurantsBySearchQueryMt}, without blocking the
+   * caller: every source is searched concurrently on the search executor, and the sources that
+   * completed by the search deadline are merged and ranked.
+   * @param getRestaurantsRequest valid lat/long with searchFor string
+   * @param currentTime current time
+   * @return completes with the merged response, marked partial if some sources missed the
+   *     deadline or failed
+   */
+  CompletableFuture<GetRestaurantsResponse> findRestaurantsBySearchQueryAsync(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime);
+
+  /**
+   * Hands the restaurants of @link{findAllRestaurantsCloseBy}, or of
+   * @link{findRestaurantsBySearchQuery} when searchFor is set, to the consumer one at a time.
+   * Restaurants close by are handed over as they are found, without collecting them first;
+   * search results are ranked, so they are handed over once the search completed.
+   * The restaurants may be shared with the cache: the consumer must not modify them.
+   * @param getRestaurantsRequest valid lat/long with optional searchFor string
+   * @param currentTime current time
+   * @param consumer called once for every restaurant, in response order
+   */
+  void streamRestaurants(GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime,
+      Consumer<Restaurant> consumer);
 }
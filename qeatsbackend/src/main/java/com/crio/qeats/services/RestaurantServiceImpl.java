@@ -10,24 +10,29 @@ package com.crio.qeats.services;
 import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.executors.SearchExecutor;
 import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import com.crio.qeats.repositoryservices.SearchCandidates;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
+@Log4j2
 public class RestaurantServiceImpl implements RestaurantService {
 
   //8AM - 10AM, 1PM-2PM, 7PM-9PM
@@ -42,30 +47,79 @@ public class RestaurantServiceImpl implements RestaurantService {
   private final Double peakHoursServingRadiusInKms = 3.0;
   private final Double normalHoursServingRadiusInKms = 5.0;
 
+  // Sources of the multi-threaded and async searches, each run as a separate leg on the search
+  // executor, reported under its name in the executor's metrics and adding its score to the
+  // restaurants it finds.
+  private enum SearchLeg {
+    EXACT_NAME("exactName", SearchCandidates.EXACT_NAME_SCORE),
+    NAME("name", SearchCandidates.NAME_SCORE),
+    ATTRIBUTES("attributes", SearchCandidates.ATTRIBUTE_SCORE),
+    ITEM_NAME("itemName", SearchCandidates.ITEM_NAME_SCORE),
+    ITEM_ATTRIBUTES("itemAttributes", SearchCandidates.ITEM_ATTRIBUTE_SCORE);
+
+    private final String tag;
+    private final int score;
+
+    SearchLeg(String tag, int score) {
+      this.tag = tag;
+      this.score = score;
+    }
+  }
+
   @Autowired
   private RestaurantRepositoryService restaurantRepositoryService;
 
+  @Autowired
+  private SearchExecutor searchExecutor;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  // How long the multi-threaded and async searches wait for their results; 0 waits for them.
+  private long searchDeadlineMs = 1000;
+
+  @Value("${qeats.search.deadlineMs:1000}")
+  public void setSearchDeadlineMs(long searchDeadlineMs) {
+    this.searchDeadlineMs = searchDeadlineMs;
+  }
+
   // TODO: CRIO_TASK_MODULE_RESTAURANTSAPI - Implement findAllRestaurantsCloseby.
   // Check RestaurantService.java file for the interface contract.
   @Override
   public GetRestaurantsResponse findAllRestaurantsCloseBy(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
 
-    int timing = currentTime.getHour() * 100 + currentTime.getMinute();
     Double latitude = getRestaurantsRequest.getLatitude();
     Double longitude = getRestaurantsRequest.getLongitude();
 
+    return new GetRestaurantsResponse(
+        restaurantRepositoryService.findAllRestaurantsCloseBy(latitude, longitude, currentTime,
+            servingRadiusInKms(currentTime)));
+  }
+
+  @Override
+  public void streamRestaurants(GetRestaurantsRequest getRestaurantsRequest,
+      LocalTime currentTime, Consumer<Restaurant> consumer) {
+    String searchFor = getRestaurantsRequest.getSearchFor();
+    if (searchFor == null || searchFor.isEmpty()) {
+      restaurantRepositoryService.streamRestaurantsCloseBy(getRestaurantsRequest.getLatitude(),
+          getRestaurantsRequest.getLongitude(), currentTime, servingRadiusInKms(currentTime),
+          consumer);
+    } else {
+      findRestaurantsBySearchQuery(getRestaurantsRequest, currentTime).getRestaurants()
+          .forEach(consumer);
+    }
+  }
+
+  // 3km during the peak hours, 5km otherwise.
+  private Double servingRadiusInKms(LocalTime currentTime) {
+    int timing = currentTime.getHour() * 100 + currentTime.getMinute();
     if ((timing >= peakHourBreakfastStart && timing <= peakHourBreakfastEnd) || (
         timing >= peakHourLunchStart && timing <= peakHourLunchEnd) || (
         timing >= peakHourDinnerStart && timing <= peakHourDinnerEnd)) {
-      return new GetRestaurantsResponse(
-          restaurantRepositoryService.findAllRestaurantsCloseBy(latitude, longitude, currentTime,
-              peakHoursServingRadiusInKms));      
-    } else {
-      return new GetRestaurantsResponse(restaurantRepositoryService
-          .findAllRestaurantsCloseBy(latitude, longitude, currentTime,
-          normalHoursServingRadiusInKms));
-    }   
+      return peakHoursServingRadiusInKms;
+    }
+    return normalHoursServingRadiusInKms;
   }
 
   // TODO: CRIO_TASK_MODULE_RESTAURANTSEARCH
@@ -76,137 +130,168 @@ public class RestaurantServiceImpl implements RestaurantService {
   // 3. Restaurants by food items it serves
   // 4. Restaurants by food item attributes (spicy, sweet, etc)
   // Remember, a restaurant must be present only once in the resulting list.
+  // All four sources are merged and ranked by relevance in a single repository call.
   // Check RestaurantService.java file for the interface contract.
   @Override
   public GetRestaurantsResponse findRestaurantsBySearchQuery(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
-    
-    Double servingRadiusInKms = isPeakHour(currentTime) 
-        ? peakHoursServingRadiusInKms : normalHoursServingRadiusInKms;
+
+    Double servingRadiusInKms = servingRadiusInKms(currentTime);
     String searchFor = getRestaurantsRequest.getSearchFor();
-    List<List<Restaurant>> listOfRestaurantLists = new ArrayList<>();
-    if (!searchFor.isEmpty()) {
-      listOfRestaurantLists.add(restaurantRepositoryService
-          .findRestaurantsByName(getRestaurantsRequest.getLatitude(),
-          getRestaurantsRequest.getLongitude(), searchFor, currentTime,
-          servingRadiusInKms));
-
-      listOfRestaurantLists.add(restaurantRepositoryService
-          .findRestaurantsByAttributes(getRestaurantsRequest.getLatitude(),
-          getRestaurantsRequest.getLongitude(), searchFor,
-          currentTime, servingRadiusInKms));
-      listOfRestaurantLists
-           .add(restaurantRepositoryService.findRestaurantsByItemName(
-             getRestaurantsRequest.getLatitude(),
-          getRestaurantsRequest.getLongitude(), searchFor,
-          currentTime, servingRadiusInKms));
-      listOfRestaurantLists.add(restaurantRepositoryService.findRestaurantsByItemAttributes(
-            getRestaurantsRequest.getLatitude(),
-          getRestaurantsRequest.getLongitude(), searchFor,
-          currentTime, servingRadiusInKms));
-          
-      Set<String> restaurantSet = new HashSet<>();
-      List<Restaurant> restaurantList = new ArrayList<>();
-      for (List<Restaurant> restoList : listOfRestaurantLists) {
-        for (Restaurant restaurant : restoList) {
-          if (!restaurantSet.contains(restaurant.getRestaurantId())) {
-            restaurantList.add(restaurant);
-            restaurantSet.add(restaurant.getRestaurantId());
-          }
-        }
-      }
-      return new GetRestaurantsResponse(restaurantList);
-    } else {
+    if (searchFor.isEmpty()) {
       return new GetRestaurantsResponse(new ArrayList<>());
     }
-  }
-
-  private boolean isTimeWithInRange(LocalTime timeNow,
-      LocalTime startTime, LocalTime endTime) {
-    return timeNow.isAfter(startTime) && timeNow.isBefore(endTime);
-  }
-
-  public boolean isPeakHour(LocalTime timeNow) {
-    return isTimeWithInRange(timeNow, LocalTime.of(7,59,59),
-LocalTime.of(10, 00, 01))
-      || isTimeWithInRange(timeNow, LocalTime.of(12,59,59),
-LocalTime.of(14,00,01))
-      || isTimeWithInRange(timeNow, LocalTime.of(18,59,59),
-LocalTime.of(21,00,01));
-
+    return new GetRestaurantsResponse(restaurantRepositoryService
+        .findRestaurantsBySearchQuery(getRestaurantsRequest.getLatitude(),
+        getRestaurantsRequest.getLongitude(), searchFor, currentTime,
+        servingRadiusInKms));
   }
 
   // TODO: CRIO_TASK_MODULE_MULTITHREADING
   // Implement multi-threaded version of RestaurantSearch.
   // Implement variant of findRestaurantsBySearchQuery which is at least 1.5x time faster than
   // findRestaurantsBySearchQuery.
+  // Runs every source as a separate leg on the search executor and merges the legs that
+  // completed by the deadline. The legs read the indexes or the database directly, never
+  // through the shared search cache, so a late leg can be interrupted without affecting other
+  // requests.
   @Override
   public GetRestaurantsResponse findRestaurantsBySearchQueryMt(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime)
       throws InterruptedException, ExecutionException {
 
-    int timing = currentTime.getHour() * 100 + currentTime.getMinute();
+    String searchFor = getRestaurantsRequest.getSearchFor();
+
+    if (searchFor == null || searchFor.isEmpty()) {
+      return new GetRestaurantsResponse(new ArrayList<>());
+    }
+
+    Map<SearchLeg, CompletableFuture<List<Restaurant>>> legs =
+        submitLegs(getRestaurantsRequest, currentTime);
+    CompletableFuture<Void> all =
+        CompletableFuture.allOf(legs.values().toArray(new CompletableFuture<?>[0]));
+    try {
+      if (searchDeadlineMs > 0) {
+        all.get(searchDeadlineMs, TimeUnit.MILLISECONDS);
+      } else {
+        all.get();
+      }
+    } catch (TimeoutException e) {
+      legs.values().forEach(leg -> leg.cancel(true));
+    } catch (ExecutionException e) {
+      // Failed legs are reported and left out by merge.
+    } catch (InterruptedException e) {
+      legs.values().forEach(leg -> leg.cancel(true));
+      throw e;
+    }
+    return merge(legs, getRestaurantsRequest, currentTime);
+  }
+
+  @Override
+  public CompletableFuture<GetRestaurantsResponse> findAllRestaurantsCloseByAsync(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
+    return searchExecutor.submit("closeBy",
+        () -> findAllRestaurantsCloseBy(getRestaurantsRequest, currentTime));
+  }
 
+  // Same legs as the multi-threaded search, merged once each of them completed or was cancelled
+  // at the deadline, without blocking a thread while they run.
+  @Override
+  public CompletableFuture<GetRestaurantsResponse> findRestaurantsBySearchQueryAsync(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
+    String searchFor = getRestaurantsRequest.getSearchFor();
+    if (searchFor == null || searchFor.isEmpty()) {
+      return CompletableFuture.completedFuture(new GetRestaurantsResponse(new ArrayList<>()));
+    }
+    Map<SearchLeg, CompletableFuture<List<Restaurant>>> legs =
+        submitLegs(getRestaurantsRequest, currentTime);
+    if (searchDeadlineMs > 0) {
+      searchExecutor.cancelAfter(legs.values(), searchDeadlineMs);
+    }
+    return CompletableFuture.allOf(legs.values().toArray(new CompletableFuture<?>[0]))
+        .handle((result, e) -> merge(legs, getRestaurantsRequest, currentTime));
+  }
+
+  private Map<SearchLeg, CompletableFuture<List<Restaurant>>> submitLegs(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
+    Map<SearchLeg, CompletableFuture<List<Restaurant>>> legs = new EnumMap<>(SearchLeg.class);
+    for (SearchLeg leg : SearchLeg.values()) {
+      legs.put(leg, searchExecutor.submit(leg.tag,
+          () -> search(leg, getRestaurantsRequest, currentTime)));
+    }
+    return legs;
+  }
+
+  private List<Restaurant> search(SearchLeg leg, GetRestaurantsRequest getRestaurantsRequest,
+      LocalTime currentTime) {
     Double latitude = getRestaurantsRequest.getLatitude();
     Double longitude = getRestaurantsRequest.getLongitude();
     String searchFor = getRestaurantsRequest.getSearchFor();
-    
-    if (searchFor.equals("")) {
-      return new GetRestaurantsResponse(new ArrayList<>());
-    } else if ((timing >= peakHourBreakfastStart && timing <= peakHourBreakfastEnd) || (
-            timing >= peakHourLunchStart && timing <= peakHourLunchEnd) || (
-            timing >= peakHourDinnerStart && timing <= peakHourDinnerEnd)) {
-      CompletableFuture<List<Restaurant>> restaurantList1 = restaurantRepositoryService
-              .findRestaurantsByNameAsync(
-                  latitude, longitude, searchFor, currentTime, peakHoursServingRadiusInKms);
-      CompletableFuture<List<Restaurant>> restaurantList2 = restaurantRepositoryService
-              .findRestaurantsByAttributesAsync(
-                  latitude, longitude, searchFor, currentTime, peakHoursServingRadiusInKms);
-      CompletableFuture<List<Restaurant>> restaurantList3 = restaurantRepositoryService
-              .findRestaurantsByItemNameAsync(
-                  latitude, longitude, searchFor, currentTime, peakHoursServingRadiusInKms);
-      CompletableFuture<List<Restaurant>> restaurantList4 = restaurantRepositoryService
-              .findRestaurantsByItemAttributesAsync(
-                  latitude, longitude, searchFor, currentTime, peakHoursServingRadiusInKms);
-    
-      CompletableFuture.allOf(restaurantList1, restaurantList2,
-              restaurantList3, restaurantList4).join();
-    
-      List<Restaurant> restaurantList = restaurantList1.get();
-      restaurantList.addAll(restaurantList2.get());
-      restaurantList.addAll(restaurantList3.get());
-      restaurantList.addAll(restaurantList4.get());
-      List<Restaurant> responseList = restaurantList.stream().distinct()
-              .collect(Collectors.toList());
-    
-      return new GetRestaurantsResponse(responseList);
-    } else {
-      CompletableFuture<List<Restaurant>> restaurantList1 = restaurantRepositoryService
-              .findRestaurantsByNameAsync(
-                  latitude, longitude, searchFor, currentTime, normalHoursServingRadiusInKms);
-      CompletableFuture<List<Restaurant>> restaurantList2 = restaurantRepositoryService
-              .findRestaurantsByAttributesAsync(
-                  latitude, longitude, searchFor, currentTime, normalHoursServingRadiusInKms);
-      CompletableFuture<List<Restaurant>> restaurantList3 = restaurantRepositoryService
-              .findRestaurantsByItemNameAsync(
-                  latitude, longitude, searchFor, currentTime, normalHoursServingRadiusInKms);
-      CompletableFuture<List<Restaurant>> restaurantList4 = restaurantRepositoryService
-              .findRestaurantsByItemAttributesAsync(
-                  latitude, longitude, searchFor, currentTime, normalHoursServingRadiusInKms);
-    
-      CompletableFuture.allOf(restaurantList1, restaurantList2,
-              restaurantList3, restaurantList4).join();
-    
-      List<Restaurant> restaurantList = restaurantList1.get();
-      restaurantList.addAll(restaurantList2.get());
-      restaurantList.addAll(restaurantList3.get());
-      restaurantList.addAll(restaurantList4.get());
-      List<Restaurant> responseList = restaurantList.stream().distinct()
-              .collect(Collectors.toList());
-      return new GetRestaurantsResponse(responseList);
+    Double servingRadiusInKms = servingRadiusInKms(currentTime);
+    switch (leg) {
+      case EXACT_NAME:
+        return restaurantRepositoryService.findRestaurantsByNameExact(latitude, longitude,
+            searchFor, currentTime, servingRadiusInKms);
+      case NAME:
+        return restaurantRepositoryService.findRestaurantsByName(latitude, longitude,
+            searchFor, currentTime, servingRadiusInKms);
+      case ATTRIBUTES:
+        return restaurantRepositoryService.findRestaurantsByAttributes(latitude, longitude,
+            searchFor, currentTime, servingRadiusInKms);
+      case ITEM_NAME:
+        return restaurantRepositoryService.findRestaurantsByItemName(latitude, longitude,
+            searchFor, currentTime, servingRadiusInKms);
+      case ITEM_ATTRIBUTES:
+        return restaurantRepositoryService.findRestaurantsByItemAttributes(latitude, longitude,
+            searchFor, currentTime, servingRadiusInKms);
+      default:
+        throw new IllegalArgumentException("Unknown search leg " + leg);
     }
   }
 
+  // Ranks the restaurants found by the legs that completed. A leg that was cancelled at the
+  // deadline or failed is left out, and the response marked partial.
+  private GetRestaurantsResponse merge(Map<SearchLeg, CompletableFuture<List<Restaurant>>> legs,
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
+    String searchFor = getRestaurantsRequest.getSearchFor();
+    SearchCandidates<Restaurant> candidates = SearchCandidates.ofRestaurants();
+    boolean partial = false;
+    for (Map.Entry<SearchLeg, CompletableFuture<List<Restaurant>>> entry : legs.entrySet()) {
+      SearchLeg leg = entry.getKey();
+      if (entry.getValue().isCancelled()) {
+        recordLegTimeout(leg.tag, searchFor);
+        partial = true;
+        continue;
+      }
+      try {
+        candidates.add(entry.getValue().join(), leg.score);
+      } catch (CompletionException e) {
+        recordLegFailure(leg.tag, searchFor, e.getCause());
+        partial = true;
+      }
+    }
+    if (partial && meterRegistry != null) {
+      meterRegistry.counter("qeats.search.partial").increment();
+    }
+    return new GetRestaurantsResponse(candidates.rank(getRestaurantsRequest.getLatitude(),
+        getRestaurantsRequest.getLongitude(), currentTime, servingRadiusInKms(currentTime)),
+        partial);
+  }
+
+  private void recordLegFailure(String leg, String searchFor, Throwable cause) {
+    log.warn("Search leg {} failed for \"{}\"", leg, searchFor, cause);
+    if (meterRegistry != null) {
+      meterRegistry.counter("qeats.search.leg.failures", "leg", leg).increment();
+    }
+  }
+
+  private void recordLegTimeout(String leg, String searchFor) {
+    log.warn("Search leg {} missed the {}ms deadline for \"{}\"", leg, searchDeadlineMs,
+        searchFor);
+    if (meterRegistry != null) {
+      meterRegistry.counter("qeats.search.leg.timeouts", "leg", leg).increment();
+    }
+  }
   
      
 }
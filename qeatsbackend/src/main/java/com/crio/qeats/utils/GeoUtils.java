@@ -7,6 +7,10 @@
 
 package com.crio.qeats.utils;
 
+import ch.hsr.geohash.BoundingBox;
+import ch.hsr.geohash.GeoHash;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -14,6 +18,69 @@ import lombok.Data;
 @AllArgsConstructor
 public class GeoUtils {
 
+  public static final double KM_PER_DEGREE_LATITUDE = 111.32;
+
+  // Half the height, in degrees, of a box enclosing a circle of the given radius.
+  public static double latitudeDeltaInDegrees(double radiusInKms) {
+    return radiusInKms / KM_PER_DEGREE_LATITUDE;
+  }
+
+  // Half the width, in degrees, of a box enclosing a circle of the given radius. Measured at the
+  // circle's latitude farthest from the equator so the box never undershoots.
+  public static double longitudeDeltaInDegrees(double latitude, double radiusInKms) {
+    double farthestLatitude =
+        Math.min(90.0, Math.abs(latitude) + latitudeDeltaInDegrees(radiusInKms));
+    double cosine = Math.cos(Math.toRadians(farthestLatitude));
+    return cosine < 1e-9
+        ? 180.0 : Math.min(180.0, radiusInKms / (KM_PER_DEGREE_LATITUDE * cosine));
+  }
+
+  /**
+   * Returns the geohashes of the given precision whose cells overlap the box enclosing a circle
+   * of the given radius, walking from the south-west cell north and east through neighbours.
+   * The cell containing the centre is always part of the result.
+   * @param latitude latitude of the circle's centre
+   * @param longitude longitude of the circle's centre
+   * @param radiusInKms radius of the circle
+   * @param precision number of geohash characters
+   * @return base32 geohashes, south to north and west to east
+   */
+  public static List<String> geoHashesCovering(double latitude, double longitude,
+      double radiusInKms, int precision) {
+    double latitudeDelta = latitudeDeltaInDegrees(radiusInKms);
+    double longitudeDelta = longitudeDeltaInDegrees(latitude, radiusInKms);
+    double minLatitude = Math.max(-90.0, latitude - latitudeDelta);
+    double maxLatitude = Math.min(90.0, latitude + latitudeDelta);
+
+    double minLongitude = normalizeLongitude(longitude - longitudeDelta);
+    // May run past 180; eastern neighbours wrap around the antimeridian.
+    double maxLongitude = minLongitude + 2 * longitudeDelta;
+
+    GeoHash southWest = GeoHash.withCharacterPrecision(minLatitude, minLongitude, precision);
+    BoundingBox cell = southWest.getBoundingBox();
+    int rows = (int) Math.min(Math.round((90.0 - cell.getMinLat()) / cell.getLatitudeSize()),
+        Math.floor((maxLatitude - cell.getMinLat()) / cell.getLatitudeSize()) + 1);
+    int columns = (int) Math.min(Math.round(360.0 / cell.getLongitudeSize()),
+        Math.floor((maxLongitude - cell.getMinLon()) / cell.getLongitudeSize()) + 1);
+
+    List<String> geoHashes = new ArrayList<>(rows * columns);
+    GeoHash rowStart = southWest;
+    for (int row = 0; row < rows; row++) {
+      GeoHash current = rowStart;
+      for (int column = 0; column < columns; column++) {
+        geoHashes.add(current.toBase32());
+        current = current.getEasternNeighbour();
+      }
+      rowStart = rowStart.getNorthernNeighbour();
+    }
+    return geoHashes;
+  }
+
+  // Maps any longitude into [-180, 180).
+  public static double normalizeLongitude(double longitude) {
+    return ((longitude + 180.0) % 360.0 + 360.0) % 360.0 - 180.0;
+  }
+
   public static double findDistanceInKm(double srcLatitude, double srcLongitude,
       double dstLatitude, double dstLongitude) {
     return distance(srcLatitude, dstLatitude, srcLongitude, dstLongitude, 0, 0);
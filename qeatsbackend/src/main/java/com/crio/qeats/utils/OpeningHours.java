@@ -0,0 +1,84 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.time.LocalTime;
+
+/**
+ * Opening hours expressed as minute-of-day integers (0 - 1439).
+ * Restaurants store opensAt/closesAt as "HH:mm" strings; parsing them into a LocalTime for every
+ * candidate on every request is expensive, so they are converted once and compared as ints.
+ */
+public final class OpeningHours {
+
+  public static final int INVALID = -1;
+
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
+  private OpeningHours() { /* utility */ }
+
+  public static int minuteOfDay(LocalTime time) {
+    return time.getHour() * 60 + time.getMinute();
+  }
+
+  /**
+   * Parses "H:mm", "HH:mm" or "HH:mm:ss" into minutes since midnight without allocating.
+   * Seconds are ignored.
+   * @param time time of day
+   * @return minute of day, or {@link #INVALID} if the string is not a valid time
+   */
+  public static int toMinuteOfDay(String time) {
+    if (time == null) {
+      return INVALID;
+    }
+    int colon = time.indexOf(':');
+    if (colon < 1 || colon > 2 || time.length() < colon + 3) {
+      return INVALID;
+    }
+    int hour = parseDigits(time, 0, colon);
+    int minute = parseDigits(time, colon + 1, colon + 3);
+    if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+      return INVALID;
+    }
+    return hour * 60 + minute;
+  }
+
+  /**
+   * Checks whether a restaurant is open at the given minute of day.
+   *   - Opening minute is inclusive, closing minute is exclusive.
+   *   - Windows where closesAt is before opensAt cross midnight (e.g. 18:00 - 02:00).
+   *   - Equal opensAt and closesAt means the restaurant is open around the clock.
+   * @param opensAt opening minute of day
+   * @param closesAt closing minute of day
+   * @param minuteOfDay minute of day to check
+   * @return true if open, false otherwise or if either bound is invalid
+   */
+  public static boolean isOpen(int opensAt, int closesAt, int minuteOfDay) {
+    if (opensAt < 0 || closesAt < 0 || minuteOfDay < 0 || minuteOfDay >= MINUTES_PER_DAY) {
+      return false;
+    }
+    if (opensAt < closesAt) {
+      return minuteOfDay >= opensAt && minuteOfDay < closesAt;
+    }
+    if (opensAt > closesAt) {
+      return minuteOfDay >= opensAt || minuteOfDay < closesAt;
+    }
+    return true;
+  }
+
+  private static int parseDigits(String value, int start, int end) {
+    int result = 0;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return INVALID;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits search strings and indexed text into terms the same way, so that lookups match what
+ * was indexed: lower case, cut at anything that is not a letter or a digit.
+ */
+public final class SearchTerms {
+
+  // Any character that is not part of a term.
+  private static final String NON_TERM = "[^\\p{L}\\p{N}]";
+
+  private static final Pattern SEPARATOR = Pattern.compile(NON_TERM + "+");
+
+  private SearchTerms() { /* utility */ }
+
+  public static List<String> tokenize(String text) {
+    List<String> terms = new ArrayList<>();
+    if (text == null) {
+      return terms;
+    }
+    for (String term : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+      if (!term.isEmpty()) {
+        terms.add(term);
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * Checks a few texts against a query without building an index.
+   * @param queryTerms tokenized query
+   * @param texts texts of one document, e.g. a restaurant's attributes
+   * @return true when every query term is a prefix of some term of the texts, the same rule
+   *     the in-memory indexes apply
+   */
+  public static boolean matchesAll(List<String> queryTerms, Collection<String> texts) {
+    if (queryTerms.isEmpty() || texts == null) {
+      return false;
+    }
+    List<String> terms = new ArrayList<>();
+    for (String text : texts) {
+      terms.addAll(tokenize(text));
+    }
+    for (String queryTerm : queryTerms) {
+      if (terms.stream().noneMatch(term -> term.startsWith(queryTerm))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Terms joined by single spaces, e.g. "  Pizza-Hut " -> "pizza hut".
+  public static String normalize(String text) {
+    return String.join(" ", tokenize(text));
+  }
+
+  /**
+   * Regular expression for the database, matching a text with a term starting with the given
+   * query term: the rule of {@link #matchesAll} for a single term. The term is matched
+   * literally.
+   */
+  public static Pattern prefixPattern(String queryTerm) {
+    return Pattern.compile("(^|" + NON_TERM + ")" + Pattern.quote(queryTerm),
+        Pattern.CASE_INSENSITIVE);
+  }
+
+  /**
+   * Regular expression for the database, matching a text made of exactly the given terms,
+   * i.e. whose {@link #normalize normalized} form is the terms joined by spaces. The terms are
+   * matched literally.
+   */
+  public static Pattern exactPattern(List<String> queryTerms) {
+    StringBuilder regex = new StringBuilder("^").append(NON_TERM).append('*');
+    for (int i = 0; i < queryTerms.size(); i++) {
+      if (i > 0) {
+        regex.append(NON_TERM).append('+');
+      }
+      regex.append(Pattern.quote(queryTerms.get(i)));
+    }
+    regex.append(NON_TERM).append("*$");
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class BinaryRestaurantCodecTest {
+
+  private final BinaryRestaurantCodec codec = new BinaryRestaurantCodec();
+
+  @Test
+  void encodedRestaurantDecodesToAnEqualRestaurant() throws IOException {
+    Restaurant restaurant = restaurant();
+
+    assertEquals(restaurant, codec.decode(codec.encode(restaurant)));
+  }
+
+  @Test
+  void nullFieldsSurviveTheRoundTrip() throws IOException {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId("10");
+    restaurant.setAttributes(null);
+
+    assertEquals(restaurant, codec.decode(codec.encode(restaurant)));
+  }
+
+  @Test
+  void encodingIsSmallerThanJson() throws IOException {
+    Restaurant restaurant = restaurant();
+
+    assertTrue(codec.encode(restaurant).length
+        < new JsonRestaurantCodec().encode(restaurant).length / 2);
+  }
+
+  @Test
+  void corruptPayloadsAreRejected() {
+    byte[] payload = codec.encode(restaurant());
+
+    assertThrows(IOException.class,
+        () -> codec.decode(Arrays.copyOf(payload, payload.length - 3)));
+    assertThrows(IOException.class, () -> codec.decode("{\"name\":\"A2B\"}".getBytes()));
+  }
+
+  private static Restaurant restaurant() {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurant(null, "10", "A2B Caf\u00e9", "Hsr Layout", "www.google.com",
+        20.027, 30.0, "18:00", "23:00", Arrays.asList("Tamil", "South Indian"));
+    return restaurant;
+  }
+}
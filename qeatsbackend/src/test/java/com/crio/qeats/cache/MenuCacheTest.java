@@ -0,0 +1,91 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.dto.Menu;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MenuCacheTest {
+
+  private MenuCache menuCache;
+
+  @BeforeEach
+  void setup() {
+    menuCache = new MenuCache();
+    menuCache.initCache();
+  }
+
+  @Test
+  void menusAreLoadedOnceUntilInvalidated() {
+    AtomicInteger loads = new AtomicInteger();
+    Menu menu = new Menu("11", new ArrayList<>());
+
+    assertSame(menu, menuCache.get("11", () -> {
+      loads.incrementAndGet();
+      return menu;
+    }));
+    assertSame(menu, menuCache.get("11", () -> {
+      loads.incrementAndGet();
+      return menu;
+    }));
+    assertEquals(1, loads.get());
+
+    menuCache.invalidate("11");
+    menuCache.get("11", () -> {
+      loads.incrementAndGet();
+      return menu;
+    });
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void missingMenusAreCachedToo() {
+    AtomicInteger loads = new AtomicInteger();
+
+    assertNull(menuCache.get("100", () -> {
+      loads.incrementAndGet();
+      return null;
+    }));
+    assertNull(menuCache.get("100", () -> {
+      loads.incrementAndGet();
+      return null;
+    }));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void loaderFailuresAreRethrownAndNotCached() {
+    assertThrows(IllegalArgumentException.class, () -> menuCache.get("11", () -> {
+      throw new IllegalArgumentException("boom");
+    }));
+    Menu menu = new Menu("11", new ArrayList<>());
+    assertSame(menu, menuCache.get("11", () -> menu));
+  }
+
+  @Test
+  void cachedMenusFindItemsById() {
+    Item dosai = new Item(null, "2", "Dosai", "www.google.com", new ArrayList<>(), 75);
+    Item idli = new Item(null, "3", "Idli", "www.google.com", new ArrayList<>(), 40);
+    Menu menu = menuCache.get("11", () -> new Menu("11", Arrays.asList(dosai, idli)));
+
+    assertSame(idli, menu.findItem("3"));
+    assertNull(menu.findItem("4"));
+
+    menu.setItems(Arrays.asList(dosai));
+    assertNull(menu.findItem("3"));
+  }
+}
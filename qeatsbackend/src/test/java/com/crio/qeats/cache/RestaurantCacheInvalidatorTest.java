@@ -0,0 +1,108 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.Arrays;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+
+@ExtendWith(MockitoExtension.class)
+class RestaurantCacheInvalidatorTest {
+
+  @Mock
+  private RestaurantCellCache restaurantCellCache;
+
+  @Mock
+  private SearchResultCache searchResultCache;
+
+  @Mock
+  private MongoTemplate mongoTemplate;
+
+  @InjectMocks
+  private RestaurantCacheInvalidator restaurantCacheInvalidator;
+
+  @Test
+  void movedRestaurantIsDroppedFromItsOldAndNewCells() {
+    when(mongoTemplate.findOne(any(Query.class), eq(RestaurantEntity.class), eq("restaurants")))
+        .thenReturn(restaurant(20.0, 30.0));
+
+    save(restaurant(21.0, 31.0));
+
+    verify(restaurantCellCache).invalidateCell(RestaurantCellCache.cellOf(20.0, 30.0));
+    verify(restaurantCellCache).invalidateCell(RestaurantCellCache.cellOf(21.0, 31.0));
+    verify(searchResultCache).invalidateAll();
+  }
+
+  @Test
+  void restaurantSavedInTheSameCellDropsItOnce() {
+    when(mongoTemplate.findOne(any(Query.class), eq(RestaurantEntity.class), eq("restaurants")))
+        .thenReturn(restaurant(20.0, 30.0));
+
+    save(restaurant(20.0, 30.0));
+
+    verify(restaurantCellCache, times(1)).invalidateCell(RestaurantCellCache.cellOf(20.0, 30.0));
+    verifyNoMoreInteractions(restaurantCellCache);
+  }
+
+  @Test
+  void newRestaurantDropsItsCell() {
+    save(restaurant(20.0, 30.0));
+
+    verify(restaurantCellCache).invalidateCell(RestaurantCellCache.cellOf(20.0, 30.0));
+    verifyNoMoreInteractions(restaurantCellCache);
+  }
+
+  @Test
+  void deletedRestaurantsAreDroppedFromTheirCells() {
+    when(mongoTemplate.find(any(Query.class), eq(RestaurantEntity.class), eq("restaurants")))
+        .thenReturn(Arrays.asList(restaurant(20.0, 30.0), restaurant(21.0, 31.0)));
+
+    Document query = new Document("_id", new Document("$in", Arrays.asList("5c8f", "5c90")));
+    restaurantCacheInvalidator.onBeforeDelete(
+        new BeforeDeleteEvent<>(query, RestaurantEntity.class, "restaurants"));
+    restaurantCacheInvalidator.onAfterDelete(
+        new AfterDeleteEvent<>(query, RestaurantEntity.class, "restaurants"));
+
+    verify(restaurantCellCache).invalidateCell(RestaurantCellCache.cellOf(20.0, 30.0));
+    verify(restaurantCellCache).invalidateCell(RestaurantCellCache.cellOf(21.0, 31.0));
+    verify(searchResultCache).invalidateAll();
+  }
+
+  private void save(RestaurantEntity restaurant) {
+    restaurantCacheInvalidator.onBeforeSave(
+        new BeforeSaveEvent<>(restaurant, new Document(), "restaurants"));
+    restaurantCacheInvalidator.onAfterSave(
+        new AfterSaveEvent<>(restaurant, new Document(), "restaurants"));
+  }
+
+  private static RestaurantEntity restaurant(double latitude, double longitude) {
+    RestaurantEntity restaurant = new RestaurantEntity();
+    restaurant.setId("5c8f");
+    restaurant.setRestaurantId("10");
+    restaurant.setLatitude(latitude);
+    restaurant.setLongitude(longitude);
+    return restaurant;
+  }
+}
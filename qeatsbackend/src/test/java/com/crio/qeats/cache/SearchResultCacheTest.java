@@ -0,0 +1,75 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.crio.qeats.dto.Restaurant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchResultCacheTest {
+
+  private SearchResultCache searchResultCache;
+
+  @BeforeEach
+  void setup() {
+    searchResultCache = new SearchResultCache();
+    searchResultCache.initCache();
+  }
+
+  @Test
+  void keysIgnoreCaseAndPunctuationButNotCellOrRadius() {
+    assertEquals(SearchResultCache.key("Chicken  Biryani", "tdr1w", 3.0),
+        SearchResultCache.key(" chicken-BIRYANI", "tdr1w", 3.0));
+    assertNotEquals(SearchResultCache.key("biryani", "tdr1w", 3.0),
+        SearchResultCache.key("biryani", "tdr1x", 3.0));
+    assertNotEquals(SearchResultCache.key("biryani", "tdr1w", 3.0),
+        SearchResultCache.key("biryani", "tdr1w", 5.0));
+  }
+
+  @Test
+  void hitsAreLoadedOnceUntilInvalidated() {
+    AtomicInteger loads = new AtomicInteger();
+    List<SearchHit> hits = Collections.singletonList(new SearchHit(new Restaurant(), 4));
+    String key = SearchResultCache.key("biryani", "tdr1w", 3.0);
+
+    assertSame(hits, searchResultCache.get(key, () -> {
+      loads.incrementAndGet();
+      return hits;
+    }));
+    assertSame(hits, searchResultCache.get(key, () -> {
+      loads.incrementAndGet();
+      return hits;
+    }));
+    assertEquals(1, loads.get());
+
+    searchResultCache.invalidateAll();
+    searchResultCache.get(key, () -> {
+      loads.incrementAndGet();
+      return hits;
+    });
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void loaderFailuresAreRethrownAndNotCached() {
+    String key = SearchResultCache.key("biryani", "tdr1w", 3.0);
+
+    assertThrows(IllegalArgumentException.class, () -> searchResultCache.get(key, () -> {
+      throw new IllegalArgumentException("boom");
+    }));
+    assertEquals(Collections.emptyList(),
+        searchResultCache.get(key, Collections::emptyList));
+  }
+}
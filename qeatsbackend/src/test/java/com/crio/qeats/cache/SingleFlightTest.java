@@ -0,0 +1,111 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+  @Test
+  void concurrentCallersShareOneLoad() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    try {
+      Future<Map<String, String>> leader = executor.submit(() ->
+          singleFlight.executeAll(Collections.singletonList("a"), keys -> {
+            loading.countDown();
+            await(release);
+            return load(loads, keys);
+          }));
+      loading.await(5, TimeUnit.SECONDS);
+
+      Map<String, String> followerValues = new ConcurrentHashMap<>();
+      List<Thread> followers = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        Thread follower = new Thread(() -> followerValues.putAll(singleFlight.executeAll(
+            Collections.singletonList("a"), keys -> load(loads, keys))));
+        follower.start();
+        followers.add(follower);
+      }
+      // Followers park on the leader's load.
+      for (Thread follower : followers) {
+        while (follower.getState() != Thread.State.WAITING) {
+          Thread.sleep(1);
+        }
+      }
+      release.countDown();
+
+      assertEquals("A", leader.get(5, TimeUnit.SECONDS).get("a"));
+      for (Thread follower : followers) {
+        follower.join(5000);
+      }
+      assertEquals("A", followerValues.get("a"));
+      assertEquals(1, loads.get());
+      assertEquals(0, singleFlight.inFlightCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void keysAreReleasedOnceLoaded() {
+    AtomicInteger loads = new AtomicInteger();
+
+    singleFlight.executeAll(Arrays.asList("a", "b"), keys -> load(loads, keys));
+    Map<String, String> values =
+        singleFlight.executeAll(Arrays.asList("a", "b"), keys -> load(loads, keys));
+
+    assertEquals("B", values.get("b"));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void loaderFailuresPropagateAndReleaseTheKeys() {
+    assertThrows(IllegalStateException.class,
+        () -> singleFlight.executeAll(Collections.singletonList("a"), keys -> {
+          throw new IllegalStateException("down");
+        }));
+
+    assertEquals(0, singleFlight.inFlightCount());
+  }
+
+  private static Map<String, String> load(AtomicInteger loads, Collection<String> keys) {
+    loads.incrementAndGet();
+    Map<String, String> values = new HashMap<>();
+    keys.forEach(key -> values.put(key, key.toUpperCase()));
+    return values;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
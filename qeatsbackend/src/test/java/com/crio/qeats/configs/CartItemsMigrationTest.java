@@ -0,0 +1,93 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.CartEntity;
+import com.crio.qeats.models.CartItemEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+@ExtendWith(MockitoExtension.class)
+class CartItemsMigrationTest {
+
+  @Mock
+  private MongoTemplate mongoTemplate;
+
+  @Mock
+  private BulkOperations bulkOperations;
+
+  @InjectMocks
+  private CartItemsMigration cartItemsMigration;
+
+  @Test
+  void itemsListedOncePerUnitBecomeOneLinePerItem() {
+    CartEntity cartEntity = CartItemsMigration.toCartEntity(legacyCart("cart1",
+        item("10", "Idli", 40), item("20", "Dosa", 55), item("10", "Idli", 40),
+        new Document("name", "No id")));
+
+    Map<String, CartItemEntity> lines = cartEntity.getLines();
+    assertEquals(Arrays.asList("10", "20"), new ArrayList<>(lines.keySet()));
+    assertEquals(2, lines.get("10").getQuantity());
+    assertEquals("Idli", lines.get("10").getName());
+    assertEquals(Collections.singletonList("South Indian"), lines.get("10").getAttributes());
+    assertEquals(1, lines.get("20").getQuantity());
+    assertEquals(135, cartEntity.getTotal());
+  }
+
+  @Test
+  void arrayShapedCartsAreRewrittenInBulk() {
+    when(mongoTemplate.getCollectionName(CartEntity.class)).thenReturn("carts");
+    when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("carts")))
+        .thenReturn(Arrays.asList(legacyCart("cart1", item("10", "Idli", 40)),
+            legacyCart("cart2")))
+        .thenReturn(new ArrayList<>());
+    when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CartEntity.class))
+        .thenReturn(bulkOperations);
+
+    cartItemsMigration.migrateCartItems();
+
+    ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOperations, times(2)).updateOne(any(Query.class), updates.capture());
+    verify(bulkOperations).execute();
+    Document set = updates.getAllValues().get(0).getUpdateObject().get("$set", Document.class);
+    assertEquals(1, ((Map<?, ?>) set.get("items")).size());
+    set = updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class);
+    assertEquals(0, ((Map<?, ?>) set.get("items")).size());
+  }
+
+  private static Document legacyCart(String cartId, Document... items) {
+    return new Document("_id", cartId).append("items", Arrays.asList(items));
+  }
+
+  private static Document item(String itemId, String name, int price) {
+    return new Document("itemId", itemId)
+        .append("name", name)
+        .append("imageUrl", "www.google.com")
+        .append("attributes", Collections.singletonList("South Indian"))
+        .append("price", price);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class RestaurantStreamWriterTest {
+
+  @Test
+  void restaurantsAreWrittenOnePerLineWithSanitizedNames() throws Exception {
+    Restaurant cafe = restaurant("11", "Caf\u00e9 Coffee Day");
+    Restaurant briyani = restaurant("12", "Briyani House");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    try (RestaurantStreamWriter writer = new RestaurantStreamWriter(outputStream)) {
+      writer.write(cafe);
+      writer.write(briyani);
+    }
+
+    String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals(2, lines.length);
+    assertEquals(restaurant("11", "Caf? Coffee Day").serializeToJson(), lines[0]);
+    assertEquals(briyani.serializeToJson(), lines[1]);
+    assertEquals("Caf\u00e9 Coffee Day", cafe.getName());
+  }
+
+  @Test
+  void firstRestaurantIsFlushedRightAway() throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    RestaurantStreamWriter writer = new RestaurantStreamWriter(outputStream);
+
+    writer.write(restaurant("11", "Briyani House"));
+
+    assertEquals(restaurant("11", "Briyani House").serializeToJson() + "\n",
+        new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private static Restaurant restaurant(String restaurantId, String name) {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurant(null, restaurantId, name, "Hsr Layout", "www.google.com", 20.0,
+        30.0, "09:00", "23:00", Arrays.asList("Cafe", "Italian"));
+    return restaurant;
+  }
+}
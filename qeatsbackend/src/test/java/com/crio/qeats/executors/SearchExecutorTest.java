@@ -0,0 +1,178 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SearchExecutorTest {
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private SearchExecutor searchExecutor;
+
+  @AfterEach
+  void teardown() {
+    release.countDown();
+    searchExecutor.shutdown();
+  }
+
+  @Test
+  void legsAreTimedPerLeg() throws Exception {
+    searchExecutor = searchExecutor(2, 2, 4, SearchExecutor.ABORT);
+
+    assertEquals("done", searchExecutor.submit("name", () -> "done").get(5, TimeUnit.SECONDS));
+
+    assertEquals(1, meterRegistry.get("qeats.search.leg.queue").tag("leg", "name").timer()
+        .count());
+    // The execution time is recorded just after the leg completes its future.
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (meterRegistry.find("qeats.search.leg.execution").timer() == null
+        && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, meterRegistry.get("qeats.search.leg.execution").tag("leg", "name").timer()
+        .count());
+  }
+
+  @Test
+  void legFailuresCompleteTheFuture() {
+    searchExecutor = searchExecutor(1, 1, 1, SearchExecutor.ABORT);
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> searchExecutor.submit("name", () -> {
+          throw new IllegalStateException("boom");
+        }).get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof IllegalStateException);
+  }
+
+  @Test
+  void saturatedExecutorRejectsAndCounts() throws Exception {
+    searchExecutor = searchExecutor(1, 1, 1, SearchExecutor.ABORT);
+    CompletableFuture<String> running = searchExecutor.submit("name", this::awaitRelease);
+    CompletableFuture<String> queued = searchExecutor.submit("attributes", this::awaitRelease);
+
+    CompletableFuture<String> rejected = searchExecutor.submit("itemName", () -> "never");
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> rejected.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof RejectedExecutionException);
+    assertEquals(1.0, meterRegistry.get("qeats.search.leg.rejections").tag("leg", "itemName")
+        .counter().count());
+
+    release.countDown();
+    assertEquals("released", running.get(5, TimeUnit.SECONDS));
+    assertEquals("released", queued.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void cancellingLegsInterruptsRunningOnesAndSkipsQueuedOnes() throws Exception {
+    searchExecutor = searchExecutor(1, 1, 1, SearchExecutor.ABORT);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    AtomicBoolean queuedRan = new AtomicBoolean();
+    CompletableFuture<String> running = searchExecutor.submit("name", () -> {
+      started.countDown();
+      try {
+        Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return "slept";
+    });
+    CompletableFuture<String> queued = searchExecutor.submit("attributes", () -> {
+      queuedRan.set(true);
+      return "ran";
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // The cancelled leg leaves the queue right away, so its slot is free for the next leg even
+    // while the interrupted one is still winding down.
+    queued.cancel(true);
+    assertEquals(0.0, queuedLegs());
+    running.cancel(true);
+
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    assertEquals("done", searchExecutor.submit("name", () -> "done").get(5, TimeUnit.SECONDS));
+    assertFalse(queuedRan.get());
+  }
+
+  @Test
+  void callerRunsPolicyRunsRejectedLegsOnTheCaller() throws Exception {
+    searchExecutor = searchExecutor(1, 1, 1, SearchExecutor.CALLER_RUNS);
+    searchExecutor.submit("name", this::awaitRelease);
+    searchExecutor.submit("attributes", this::awaitRelease);
+
+    String caller = Thread.currentThread().getName();
+    assertEquals(caller, searchExecutor.submit("itemName", () -> Thread.currentThread().getName())
+        .get(5, TimeUnit.SECONDS));
+    assertEquals(1.0, meterRegistry.get("qeats.search.leg.rejections").tag("leg", "itemName")
+        .counter().count());
+  }
+
+  @Test
+  void virtualThreadModeFallsBackToThePoolWithoutJdkSupport() throws Exception {
+    searchExecutor = new SearchExecutor();
+    searchExecutor.setVirtualThreadsEnabled(true);
+    searchExecutor.initExecutor();
+
+    String thread = searchExecutor.submit("name", () -> Thread.currentThread().getName())
+        .get(5, TimeUnit.SECONDS);
+    assertEquals(!VirtualThreads.isSupported(), thread.startsWith("search-"));
+  }
+
+  @Test
+  void unknownRejectionPolicyIsRefused() {
+    searchExecutor = new SearchExecutor();
+    searchExecutor.setRejectionPolicy("discard");
+
+    assertThrows(IllegalArgumentException.class, searchExecutor::initExecutor);
+    searchExecutor.setRejectionPolicy(SearchExecutor.ABORT);
+    searchExecutor.initExecutor();
+  }
+
+  private SearchExecutor searchExecutor(int corePoolSize, int maxPoolSize, int queueCapacity,
+      String rejectionPolicy) {
+    SearchExecutor searchExecutor = new SearchExecutor();
+    ReflectionTestUtils.setField(searchExecutor, "meterRegistry", meterRegistry);
+    searchExecutor.setCorePoolSize(corePoolSize);
+    searchExecutor.setMaxPoolSize(maxPoolSize);
+    searchExecutor.setQueueCapacity(queueCapacity);
+    searchExecutor.setRejectionPolicy(rejectionPolicy);
+    searchExecutor.initExecutor();
+    return searchExecutor;
+  }
+
+  private double queuedLegs() {
+    return meterRegistry.get("executor.queued").tag("name", "searchExecutor").gauge().value();
+  }
+
+  private String awaitRelease() {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return "released";
+  }
+}
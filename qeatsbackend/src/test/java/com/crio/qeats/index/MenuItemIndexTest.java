@@ -0,0 +1,124 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class MenuItemIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  @InjectMocks
+  private MenuItemIndex menuItemIndex;
+
+  @Mock
+  private MenuRepository menuRepository;
+
+  @BeforeEach
+  void setup() throws IOException {
+    MockitoAnnotations.initMocks(this);
+    when(menuRepository.findAll()).thenReturn(listOfMenus());
+  }
+
+  @Test
+  void indexIsNotReadyBeforeFirstBuild() {
+    assertFalse(menuItemIndex.isReady());
+    assertTrue(menuItemIndex.findRestaurantIdsByItemName("briyani").isEmpty());
+  }
+
+  @Test
+  void itemNamesResolveToTheRestaurantsServingThem() {
+    assertEquals(3, menuItemIndex.rebuild());
+
+    assertEquals(Arrays.asList("11", "12", "13"),
+        menuItemIndex.findRestaurantIdsByItemName("bri"));
+    assertEquals(Collections.singletonList("12"),
+        menuItemIndex.findRestaurantIdsByItemName("fish briyani"));
+    assertTrue(menuItemIndex.findRestaurantIdsByItemName("fish mutton").isEmpty());
+  }
+
+  @Test
+  void itemAttributesResolveToTheRestaurantsServingThem() {
+    menuItemIndex.rebuild();
+
+    assertEquals(Arrays.asList("11", "12", "13"),
+        menuItemIndex.findRestaurantIdsByItemAttributes("mughal"));
+    assertTrue(menuItemIndex.findRestaurantIdsByItemAttributes("tamil").isEmpty());
+  }
+
+  @Test
+  void updateReplacesTheSavedMenu() {
+    menuItemIndex.rebuild();
+
+    menuItemIndex.update(new MenuEntity(null, "13", Collections.singletonList(
+        new Item(null, "1", "Dosai", "", Arrays.asList("South Indian"), 40))));
+
+    assertEquals(Arrays.asList("11", "12"), menuItemIndex.findRestaurantIdsByItemName("bri"));
+    assertEquals(Collections.singletonList("13"),
+        menuItemIndex.findRestaurantIdsByItemAttributes("south"));
+  }
+
+  @Test
+  void savedMenusAreFoundByExactNameAndServedFromTheOverlay() {
+    menuItemIndex.rebuild();
+    MenuEntity saved = new MenuEntity(null, "14", Collections.singletonList(
+        new Item(null, "1", "Masala Dosai", "", Arrays.asList("South Indian"), 40)));
+
+    menuItemIndex.update(saved);
+
+    assertEquals(4, menuItemIndex.size());
+    assertEquals(Collections.singletonList("14"),
+        menuItemIndex.findRestaurantIdsByItemName("masala-dosai"));
+    assertEquals(Collections.singletonList(saved),
+        menuItemIndex.findMenus(Arrays.asList("14", "99")));
+  }
+
+  @Test
+  void overlayIsFoldedIntoTheIndexOnceFull() {
+    menuItemIndex.rebuild();
+
+    for (int i = 0; i <= MenuItemIndex.MAX_PENDING_UPDATES; i++) {
+      menuItemIndex.update(new MenuEntity(null, "new" + i, Collections.singletonList(
+          new Item(null, "1", "Dosai " + i, "", Arrays.asList("South Indian"), 40))));
+    }
+
+    assertEquals(3 + MenuItemIndex.MAX_PENDING_UPDATES + 1, menuItemIndex.size());
+    assertTrue(menuItemIndex.termCount() > MenuItemIndex.MAX_PENDING_UPDATES);
+    assertEquals(Collections.singletonList("new127"),
+        menuItemIndex.findRestaurantIdsByItemName("dosai 127"));
+  }
+
+  private List<MenuEntity> listOfMenus() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json");
+
+    return new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .readValue(fixture, new TypeReference<List<MenuEntity>>() {
+        });
+  }
+}
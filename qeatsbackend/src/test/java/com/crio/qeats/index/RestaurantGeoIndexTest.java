@@ -0,0 +1,133 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class RestaurantGeoIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  @InjectMocks
+  private RestaurantGeoIndex restaurantGeoIndex;
+
+  @Mock
+  private RestaurantRepository restaurantRepository;
+
+  @BeforeEach
+  void setup() throws IOException {
+    MockitoAnnotations.initMocks(this);
+    when(restaurantRepository.findAll()).thenReturn(listOfRestaurants());
+  }
+
+  @Test
+  void indexIsNotReadyBeforeFirstBuild() {
+    assertFalse(restaurantGeoIndex.isReady());
+    assertTrue(restaurantGeoIndex.findCandidatesCloseBy(20.0, 30.0, 3.0).isEmpty());
+  }
+
+  @Test
+  void rebuildIndexesEveryRestaurant() {
+    assertEquals(5, restaurantGeoIndex.rebuild());
+
+    assertTrue(restaurantGeoIndex.isReady());
+    assertEquals(5, restaurantGeoIndex.size());
+    assertTrue(restaurantGeoIndex.estimatedMemoryInBytes() > 0);
+  }
+
+  @Test
+  void candidatesOnlyComeFromCellsOverlappingTheRadius() {
+    restaurantGeoIndex.rebuild();
+
+    List<String> candidates = restaurantGeoIndex.findCandidatesCloseBy(20.0, 30.0, 3.0)
+        .stream()
+        .map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+
+    assertTrue(candidates.containsAll(Arrays.asList("10", "11", "12")));
+    assertFalse(candidates.contains("13"));
+    assertFalse(candidates.contains("14"));
+  }
+
+  @Test
+  void noCandidatesFarAway() {
+    restaurantGeoIndex.rebuild();
+
+    assertTrue(restaurantGeoIndex.findCandidatesCloseBy(-20.0, -30.0, 5.0).isEmpty());
+  }
+
+  @Test
+  void savedRestaurantMovesToTheCellOfItsNewPosition() throws IOException {
+    restaurantGeoIndex.rebuild();
+    RestaurantEntity moved = listOfRestaurants().get(0);
+    moved.setLatitude(-20.0);
+    moved.setLongitude(-30.0);
+
+    restaurantGeoIndex.update(moved);
+
+    assertEquals(5, restaurantGeoIndex.size());
+    assertEquals(Arrays.asList("11", "12"), restaurantIdsCloseBy(20.0, 30.0, 3.0));
+    assertEquals(Arrays.asList("10"), restaurantIdsCloseBy(-20.0, -30.0, 3.0));
+  }
+
+  @Test
+  void deletedRestaurantLeavesItsCell() {
+    restaurantGeoIndex.rebuild();
+    long estimatedBytes = restaurantGeoIndex.estimatedMemoryInBytes();
+
+    restaurantGeoIndex.remove("10");
+    restaurantGeoIndex.remove("unknown");
+
+    assertEquals(4, restaurantGeoIndex.size());
+    assertTrue(restaurantGeoIndex.estimatedMemoryInBytes() < estimatedBytes);
+    assertEquals(Arrays.asList("11", "12"), restaurantIdsCloseBy(20.0, 30.0, 3.0));
+  }
+
+  @Test
+  void updatesBeforeTheFirstBuildAreIgnored() throws IOException {
+    restaurantGeoIndex.update(listOfRestaurants().get(0));
+
+    assertFalse(restaurantGeoIndex.isReady());
+  }
+
+  private List<String> restaurantIdsCloseBy(double latitude, double longitude,
+      double radiusInKms) {
+    return restaurantGeoIndex.findCandidatesCloseBy(latitude, longitude, radiusInKms).stream()
+        .map(RestaurantEntity::getRestaurantId)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+        });
+  }
+}
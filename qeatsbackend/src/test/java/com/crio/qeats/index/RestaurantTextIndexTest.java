@@ -0,0 +1,141 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RestaurantTextIndexTest {
+
+  private RestaurantTextIndex restaurantTextIndex;
+
+  @BeforeEach
+  void setup() {
+    restaurantTextIndex = new RestaurantTextIndex();
+  }
+
+  @Test
+  void indexIsNotReadyBeforeFirstBuild() {
+    assertFalse(restaurantTextIndex.isReady());
+    assertTrue(restaurantTextIndex.findByName("a2b").isEmpty());
+  }
+
+  @Test
+  void exactNameMatchIgnoresCaseAndPunctuation() {
+    restaurantTextIndex.rebuild(listOfRestaurants());
+
+    assertEquals(Collections.singletonList("1"),
+        ids(restaurantTextIndex.findByNameExact("a2b")));
+    assertEquals(Collections.singletonList("3"),
+        ids(restaurantTextIndex.findByNameExact("  PIZZA-hut ")));
+  }
+
+  @Test
+  void everyQueryTermMustPrefixANameTerm() {
+    restaurantTextIndex.rebuild(listOfRestaurants());
+
+    assertEquals(Arrays.asList("1", "2"), ids(restaurantTextIndex.findByName("A2B")));
+    assertEquals(Collections.singletonList("2"),
+        ids(restaurantTextIndex.findByName("a2b anan")));
+    assertEquals(Collections.singletonList("3"), ids(restaurantTextIndex.findByName("piz h")));
+    assertTrue(restaurantTextIndex.findByName("pizza adyar").isEmpty());
+  }
+
+  @Test
+  void attributesAreMatchedByPrefix() {
+    restaurantTextIndex.rebuild(listOfRestaurants());
+
+    assertEquals(Arrays.asList("1", "2"),
+        ids(restaurantTextIndex.findByAttributes("south ind")));
+    assertEquals(Collections.singletonList("3"),
+        ids(restaurantTextIndex.findByAttributes("ital")));
+  }
+
+  @Test
+  void queriesAreNotInterpretedAsPatterns() {
+    restaurantTextIndex.rebuild(listOfRestaurants());
+
+    assertTrue(restaurantTextIndex.findByName(".*").isEmpty());
+    assertTrue(restaurantTextIndex.findByAttributes("").isEmpty());
+  }
+
+  @Test
+  void updateReplacesTheSavedRestaurant() {
+    restaurantTextIndex.rebuild(listOfRestaurants());
+
+    restaurantTextIndex.update(restaurant("3", "Domino's", "Italian"));
+
+    assertTrue(restaurantTextIndex.findByName("pizza").isEmpty());
+    assertEquals(Collections.singletonList("3"), ids(restaurantTextIndex.findByName("domino")));
+    assertEquals(3, restaurantTextIndex.size());
+  }
+
+  @Test
+  void updatedRestaurantIsFoundByEveryLookup() {
+    restaurantTextIndex.rebuild(listOfRestaurants());
+
+    restaurantTextIndex.update(restaurant("1", "Saravana Bhavan", "South Indian"));
+    restaurantTextIndex.update(restaurant("4", "A2B Veg", "North Indian"));
+
+    assertEquals(Collections.singletonList("1"),
+        ids(restaurantTextIndex.findByNameExact("saravana bhavan")));
+    assertTrue(restaurantTextIndex.findByNameExact("a2b").isEmpty());
+    assertEquals(Arrays.asList("2", "4"), ids(restaurantTextIndex.findByName("a2b")));
+    assertEquals(Arrays.asList("2", "1", "4"),
+        ids(restaurantTextIndex.findByAttributes("indian")));
+    assertEquals(Arrays.asList("3", "1", "4"),
+        ids(restaurantTextIndex.findByRestaurantIds(Arrays.asList("4", "3", "1"))));
+    assertEquals(4, restaurantTextIndex.size());
+  }
+
+  @Test
+  void updatesAreFoldedIntoTheIndexOnceTheOverlayIsFull() {
+    restaurantTextIndex.rebuild(listOfRestaurants());
+
+    for (int i = 0; i <= RestaurantTextIndex.MAX_PENDING_UPDATES; i++) {
+      restaurantTextIndex.update(restaurant("new" + i, "Cafe " + i, "Coffee"));
+    }
+    restaurantTextIndex.update(restaurant("3", "Domino's", "Italian"));
+
+    assertEquals(RestaurantTextIndex.MAX_PENDING_UPDATES + 4, restaurantTextIndex.size());
+    assertEquals(Collections.singletonList("new7"),
+        ids(restaurantTextIndex.findByNameExact("cafe 7")));
+    assertEquals(Collections.singletonList("3"), ids(restaurantTextIndex.findByName("domino")));
+    assertTrue(restaurantTextIndex.findByName("pizza").isEmpty());
+  }
+
+  private static List<RestaurantEntity> listOfRestaurants() {
+    return Arrays.asList(
+        restaurant("1", "A2B", "Tamil", "South Indian"),
+        restaurant("2", "A2B Adyar Ananda Bhavan", "South Indian"),
+        restaurant("3", "Pizza Hut", "Italian", "Fast Food"));
+  }
+
+  private static RestaurantEntity restaurant(String restaurantId, String name,
+      String... attributes) {
+    RestaurantEntity restaurant = new RestaurantEntity();
+    restaurant.setRestaurantId(restaurantId);
+    restaurant.setName(name);
+    restaurant.setAttributes(Arrays.asList(attributes));
+    return restaurant;
+  }
+
+  private static List<String> ids(List<RestaurantEntity> restaurants) {
+    return restaurants.stream()
+        .map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+}
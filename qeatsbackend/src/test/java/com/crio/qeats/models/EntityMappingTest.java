@@ -0,0 +1,93 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import com.crio.qeats.dto.Cart;
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.dto.Menu;
+import com.crio.qeats.dto.Order;
+import com.crio.qeats.dto.Restaurant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+// The entities map themselves to DTOs by hand; these mappings must match what ModelMapper used
+// to produce.
+class EntityMappingTest {
+
+  private final ModelMapper modelMapper = new ModelMapper();
+
+  @Test
+  void restaurantMatchesModelMapper() {
+    RestaurantEntity entity = new RestaurantEntity();
+    entity.setId("5c8f");
+    entity.setRestaurantId("10");
+    entity.setName("A2B");
+    entity.setCity("Hsr Layout");
+    entity.setImageUrl("www.google.com");
+    entity.setLatitude(20.027);
+    entity.setLongitude(30.0);
+    entity.setOpensAt("18:00");
+    entity.setClosesAt("23:00");
+    entity.setAttributes(Arrays.asList("Tamil", "South Indian"));
+
+    Restaurant restaurant = entity.toRestaurant();
+
+    assertEquals(modelMapper.map(entity, Restaurant.class), restaurant);
+    assertNotSame(entity.getAttributes(), restaurant.getAttributes());
+  }
+
+  @Test
+  void menuMatchesModelMapper() {
+    MenuEntity entity = new MenuEntity();
+    entity.setRestaurantId("11");
+    entity.setItems(Arrays.asList(dosai()));
+
+    assertEquals(modelMapper.map(entity, Menu.class), entity.toMenu());
+  }
+
+  @Test
+  void orderMatchesModelMapper() {
+    Cart cart = new Cart();
+    cart.setId("1");
+    cart.setRestaurantId("10");
+    cart.setUserId("Bunny");
+    cart.setItems(new ArrayList<>(Arrays.asList(dosai(), dosai())));
+    cart.setTotal(150);
+
+    OrderEntity entity = OrderEntity.fromCart(cart);
+    assertEquals(modelMapper.map(cart, OrderEntity.class), entity);
+
+    entity.setPlacedTime("2019-05-01 19:00");
+    entity.setStatus("PLACED");
+    assertEquals(modelMapper.map(entity, Order.class), entity.toOrder());
+  }
+
+  @Test
+  void cartRoundTripsThroughItsLines() {
+    Cart cart = new Cart();
+    cart.setId("1");
+    cart.setRestaurantId("10");
+    cart.setUserId("Bunny");
+    cart.setItems(new ArrayList<>(Arrays.asList(dosai(), dosai())));
+    cart.setTotal(150);
+
+    CartEntity entity = CartEntity.fromCart(cart);
+
+    assertEquals(1, entity.getLines().size());
+    assertEquals(cart, entity.toCart());
+  }
+
+  private static Item dosai() {
+    return new Item(null, "2", "Dosai", "www.google.com",
+        new ArrayList<>(Arrays.asList("South Indian")), 75);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.crio.qeats.QEatsApplication;
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeospatialIndex;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(classes = {QEatsApplication.class})
+@DirtiesContext
+@ActiveProfiles("test")
+class RestaurantRepositoryTest {
+
+  private static final double LATITUDE = 20.0;
+  private static final double LONGITUDE = 30.0;
+  private static final double RADIUS_IN_METERS = 3000;
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @BeforeEach
+  void setup() {
+    mongoTemplate.indexOps(RestaurantEntity.class)
+        .ensureIndex(new GeospatialIndex("location").typed(GeoSpatialIndexType.GEO_2DSPHERE));
+    // Saved through the repository, which sets their location from latitude/longitude.
+    restaurantRepository.saveAll(Arrays.asList(
+        restaurant("11", 20.0, 30.0, "10:00", "22:00"),
+        restaurant("12", 20.01, 30.0, "18:00", "02:00"),
+        restaurant("13", 20.1, 30.0, "00:00", "23:59")));
+  }
+
+  @AfterEach
+  void teardown() {
+    mongoTemplate.dropCollection("restaurants");
+  }
+
+  @Test
+  void savedRestaurantsGetTheirLocation() {
+    RestaurantEntity restaurant = restaurantRepository.findById("id11").get();
+
+    assertNotNull(restaurant.getLocation());
+    assertEquals(30.0, restaurant.getLocation().getX());
+    assertEquals(20.0, restaurant.getLocation().getY());
+  }
+
+  @Test
+  void normalWindowIsOpenBetweenOpensAtAndClosesAt() {
+    assertEquals(Arrays.asList("11"), openRestaurantsNear("09:59"));
+    assertEquals(Arrays.asList("11"), openRestaurantsNear("10:00"));
+    assertEquals(Arrays.asList("11", "12"), openRestaurantsNear("18:00"));
+    assertEquals(Arrays.asList("11", "12"), openRestaurantsNear("22:00"));
+  }
+
+  @Test
+  void windowCrossingMidnightIsOpenOnBothSidesOfIt() {
+    assertEquals(Arrays.asList("12"), openRestaurantsNear("23:30"));
+    assertEquals(Arrays.asList("12"), openRestaurantsNear("01:00"));
+    assertEquals(Arrays.asList("12"), openRestaurantsNear("02:00"));
+    assertEquals(new ArrayList<>(), openRestaurantsNear("02:01"));
+    assertEquals(Arrays.asList("11"), openRestaurantsNear("12:00"));
+  }
+
+  @Test
+  void streamMatchesTheSameRestaurants() {
+    try (Stream<RestaurantEntity> restaurants = restaurantRepository.streamOpenRestaurantsNear(
+        LATITUDE, LONGITUDE, RADIUS_IN_METERS, "23:30")) {
+      assertEquals(Arrays.asList("12"), restaurants.map(RestaurantEntity::getRestaurantId)
+          .collect(Collectors.toList()));
+    }
+  }
+
+  // Restaurant 13 is open all day but 11km away, so it is never listed.
+  private List<String> openRestaurantsNear(String currentTime) {
+    return restaurantRepository
+        .findOpenRestaurantsNear(LATITUDE, LONGITUDE, RADIUS_IN_METERS, currentTime)
+        .orElseGet(ArrayList::new).stream()
+        .map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+
+  private static RestaurantEntity restaurant(String restaurantId, double latitude,
+      double longitude, String opensAt, String closesAt) {
+    RestaurantEntity restaurant = new RestaurantEntity();
+    restaurant.setId("id" + restaurantId);
+    restaurant.setRestaurantId(restaurantId);
+    restaurant.setName("Restaurant " + restaurantId);
+    restaurant.setCity("Hsr Layout");
+    restaurant.setImageUrl("www.google.com");
+    restaurant.setLatitude(latitude);
+    restaurant.setLongitude(longitude);
+    restaurant.setOpensAt(opensAt);
+    restaurant.setClosesAt(closesAt);
+    return restaurant;
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.cache.RedisCacheClient;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Cart;
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.exceptions.ItemNotFromSameRestaurantException;
+import com.crio.qeats.models.CartEntity;
+import com.crio.qeats.repositories.CartRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.embedded.RedisServer;
+
+class CartRepositoryServiceRedisImplTest {
+
+  private static final int REDIS_PORT = 6391;
+
+  private RedisServer redisServer;
+  private RedisConfiguration redisConfiguration;
+  private CartRepositoryServiceRedisImpl cartStore;
+
+  private CartRepository cartRepository = mock(CartRepository.class);
+  private CartRepositoryServiceImpl databaseStore = mock(CartRepositoryServiceImpl.class);
+  private MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+  private BulkOperations bulkOperations = mock(BulkOperations.class);
+
+  @BeforeEach
+  void setup() throws IOException {
+    redisServer = new RedisServer(REDIS_PORT);
+    redisServer.start();
+    redisConfiguration = new RedisConfiguration();
+    redisConfiguration.setRedisPort(REDIS_PORT);
+    redisConfiguration.initCache();
+    RedisCacheClient redisCacheClient = new RedisCacheClient();
+    ReflectionTestUtils.setField(redisCacheClient, "redisConfiguration", redisConfiguration);
+
+    cartStore = new CartRepositoryServiceRedisImpl();
+    cartStore.redisCacheClient = redisCacheClient;
+    cartStore.redisConfiguration = redisConfiguration;
+    cartStore.cartRepository = cartRepository;
+    cartStore.databaseStore = databaseStore;
+    cartStore.mongoTemplate = mongoTemplate;
+    when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CartEntity.class))
+        .thenReturn(bulkOperations);
+  }
+
+  @AfterEach
+  void teardown() {
+    redisConfiguration.destroyCache();
+    redisServer.stop();
+  }
+
+  @Test
+  void addItemLoadsTheCartOnceAndDefersTheWrite() {
+    when(cartRepository.findById("cart1"))
+        .thenReturn(Optional.of(cartEntity("cart1", "11", item("10", 40))));
+
+    cartStore.addItem(item("10", 40), "cart1", "11");
+    Cart cart = cartStore.addItem(item("20", 25), "cart1", "11");
+
+    assertEquals(3, cart.getItems().size());
+    assertEquals(105, cart.getTotal());
+    assertEquals("11", cart.getRestaurantId());
+    assertEquals("user1", cart.getUserId());
+    verify(cartRepository, times(1)).findById("cart1");
+    verify(mongoTemplate, never()).bulkOps(any(), eq(CartEntity.class));
+    assertTrue(isDirty("cart1"));
+    assertEquals(cart, cartStore.findCartByCartId("cart1"));
+  }
+
+  @Test
+  void addItemFromAnotherRestaurantIsRefused() {
+    when(cartRepository.findById("cart1"))
+        .thenReturn(Optional.of(cartEntity("cart1", "11", item("10", 40))));
+
+    assertThrows(ItemNotFromSameRestaurantException.class,
+        () -> cartStore.addItem(item("30", 70), "cart1", "12"));
+    assertEquals(40, cartStore.findCartByCartId("cart1").getTotal());
+  }
+
+  @Test
+  void removingTheLastItemReleasesTheRestaurant() {
+    when(cartRepository.findById("cart1"))
+        .thenReturn(Optional.of(cartEntity("cart1", "11", item("10", 40), item("10", 40))));
+
+    Cart cart = cartStore.removeItem(item("10", 40), "cart1", "11");
+    assertEquals(1, cart.getItems().size());
+    assertEquals("11", cart.getRestaurantId());
+
+    cart = cartStore.removeItem(item("10", 40), "cart1", "11");
+    assertTrue(cart.getItems().isEmpty());
+    assertEquals(0, cart.getTotal());
+    assertEquals("", cart.getRestaurantId());
+    cartStore.addItem(item("30", 70), "cart1", "12");
+  }
+
+  @Test
+  void flushWritesModifiedCartsInOneBulkOperation() {
+    when(cartRepository.findById("cart1")).thenReturn(Optional.of(cartEntity("cart1", "11")));
+    when(cartRepository.findById("cart2")).thenReturn(Optional.of(cartEntity("cart2", "11")));
+    cartStore.addItem(item("10", 40), "cart1", "11");
+    cartStore.addItem(item("10", 40), "cart2", "11");
+    cartStore.removeCart("cart2");
+
+    assertEquals(2, cartStore.flushDirtyCarts());
+
+    verify(mongoTemplate, times(1)).bulkOps(BulkOperations.BulkMode.UNORDERED, CartEntity.class);
+    verify(bulkOperations, times(2)).updateOne(any(Query.class), any(Update.class));
+    verify(bulkOperations).execute();
+    assertEquals(0, cartStore.flushDirtyCarts());
+  }
+
+  @Test
+  void failedFlushKeepsTheCartsDirty() {
+    when(cartRepository.findById("cart1")).thenReturn(Optional.of(cartEntity("cart1", "11")));
+    when(bulkOperations.execute()).thenThrow(new IllegalStateException("write failed"));
+    cartStore.addItem(item("10", 40), "cart1", "11");
+
+    assertEquals(0, cartStore.flushDirtyCarts());
+
+    assertTrue(isDirty("cart1"));
+  }
+
+  @Test
+  void fallsBackToTheDatabaseWithoutRedis() {
+    redisConfiguration.destroyCache();
+    Item item = item("10", 40);
+
+    cartStore.addItem(item, "cart1", "11");
+
+    verify(databaseStore).addItem(item, "cart1", "11");
+  }
+
+  @Test
+  void writeFallingBackToTheDatabaseDropsTheRedisCopy() {
+    when(cartRepository.findById("cart1")).thenReturn(Optional.of(cartEntity("cart1", "11")));
+    cartStore.addItem(item("10", 40), "cart1", "11");
+    RedisCacheClient redisCacheClient = cartStore.redisCacheClient;
+    cartStore.redisCacheClient = mock(RedisCacheClient.class);
+    when(cartStore.redisCacheClient.execute(any()))
+        .thenThrow(new JedisConnectionException("Redis down"));
+    Item item = item("20", 25);
+
+    cartStore.addItem(item, "cart1", "11");
+    cartStore.redisCacheClient = redisCacheClient;
+
+    verify(databaseStore).addItem(item, "cart1", "11");
+    assertEquals(0, cartStore.flushDirtyCarts());
+    verify(bulkOperations, never()).execute();
+    assertFalse(isDirty("cart1"));
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      assertFalse(jedis.exists(CartRepositoryServiceRedisImpl.key("cart1")));
+    }
+  }
+
+  @Test
+  void cartWithoutRestaurantIsFlushedWithoutOne() {
+    when(cartRepository.findById("cart1")).thenReturn(Optional.of(cartEntity("cart1", null)));
+
+    Cart cart = cartStore.removeCart("cart1");
+    cartStore.flushDirtyCarts();
+
+    assertNull(cart.getRestaurantId());
+    ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOperations).updateOne(any(Query.class), update.capture());
+    assertTrue(update.getValue().getUpdateObject().get("$set", Document.class)
+        .containsKey("restaurantId"));
+    assertNull(update.getValue().getUpdateObject().get("$set", Document.class)
+        .get("restaurantId"));
+  }
+
+  @Test
+  void flushOnlyWritesOverAnOlderVersion() {
+    CartEntity stored = cartEntity("cart1", "11");
+    stored.setVersion(5L);
+    when(cartRepository.findById("cart1")).thenReturn(Optional.of(stored));
+    cartStore.addItem(item("10", 40), "cart1", "11");
+    cartStore.addItem(item("20", 25), "cart1", "11");
+    cartStore.removeItem(item("30", 70), "cart1", "11");
+
+    cartStore.flushDirtyCarts();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOperations).updateOne(query.capture(), update.capture());
+    assertEquals(Arrays.asList(new Document("version", new Document("$lt", 7L)),
+        new Document("version", new Document("$exists", false))),
+        query.getValue().getQueryObject().get("$or"));
+    assertEquals(7L, update.getValue().getUpdateObject().get("$set", Document.class)
+        .get("version"));
+  }
+
+  private boolean isDirty(String cartId) {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      return jedis.sismember(CartRepositoryServiceRedisImpl.DIRTY_KEY, cartId);
+    }
+  }
+
+  private static CartEntity cartEntity(String cartId, String restaurantId, Item... items) {
+    CartEntity cartEntity = new CartEntity();
+    cartEntity.setId(cartId);
+    cartEntity.setUserId("user1");
+    cartEntity.setRestaurantId(restaurantId);
+    for (Item item : items) {
+      cartEntity.addItem(item);
+    }
+    return cartEntity;
+  }
+
+  private static Item item(String itemId, int price) {
+    return new Item(null, itemId, "Item " + itemId, "www.google.com", new ArrayList<>(), price);
+  }
+}
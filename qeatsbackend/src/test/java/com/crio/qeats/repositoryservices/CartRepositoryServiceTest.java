@@ -1,10 +1,13 @@
 package com.crio.qeats.repositoryservices;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.crio.qeats.QEatsApplication;
 import com.crio.qeats.dto.Cart;
 import com.crio.qeats.dto.Item;
+import com.crio.qeats.exceptions.CartNotFoundException;
+import com.crio.qeats.exceptions.ItemNotFromSameRestaurantException;
 import com.crio.qeats.models.CartEntity;
 import com.crio.qeats.utils.FixtureHelpers;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -14,6 +17,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import javax.inject.Provider;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -160,6 +164,61 @@ class CartRepositoryServiceTest {
   }
 
 
+  @Test
+  public void addingItemFromAnotherRestaurantIsRefused() throws Exception {
+    Optional<Cart> cart = cartRepositoryService.findCartByUserId("Bunny");
+
+    assertThrows(ItemNotFromSameRestaurantException.class,
+        () -> cartRepositoryService.addItem(dosai(), cart.get().getId(), "11"));
+
+    Optional<Cart> cartAfterRefusal = cartRepositoryService.findCartByUserId("Bunny");
+    assertEquals(1, cartAfterRefusal.get().getItems().size());
+    assertEquals(225, cartAfterRefusal.get().getTotal());
+  }
+
+  @Test
+  public void addingTheSameItemTwiceKeepsBothAndRemovingOneKeepsTheOther() throws Exception {
+    Optional<Cart> cart = cartRepositoryService.findCartByUserId("Bunny");
+
+    cartRepositoryService.addItem(dosai(), cart.get().getId(), cart.get().getRestaurantId());
+    cartRepositoryService.addItem(dosai(), cart.get().getId(), cart.get().getRestaurantId());
+    Cart cartAfterRemoval = cartRepositoryService.removeItem(dosai(), cart.get().getId(),
+        cart.get().getRestaurantId());
+
+    assertEquals(2, cartAfterRemoval.getItems().size());
+    assertEquals(300, cartAfterRemoval.getTotal());
+    assertEquals("10", cartAfterRemoval.getRestaurantId());
+  }
+
+  @Test
+  public void addingTheSameItemTwiceStoresOneLineWithItsQuantity() throws Exception {
+    cartRepositoryService.addItem(dosai(), "1", "10");
+    cartRepositoryService.addItem(dosai(), "1", "10");
+
+    Document stored = mongoTemplate.findById("1", Document.class, "carts");
+    Document lines = stored.get("items", Document.class);
+    Document dosaiLine = lines.get(dosai().getItemId(), Document.class);
+    assertEquals(2, lines.size());
+    assertEquals(2, dosaiLine.getInteger("quantity").intValue());
+    assertEquals(375, cartRepositoryService.findCartByCartId("1").getTotal());
+  }
+
+  @Test
+  public void removeCartEmptiesItemsAndTotal() {
+    Cart clearedCart = cartRepositoryService.removeCart("1");
+
+    assertEquals(0, clearedCart.getItems().size());
+    assertEquals(0, clearedCart.getTotal());
+    assertEquals(0, cartRepositoryService.findCartByCartId("1").getItems().size());
+  }
+
+  @Test
+  public void updatingUnknownCartThrows() {
+    assertThrows(CartNotFoundException.class, () -> cartRepositoryService.removeCart("42"));
+    assertThrows(CartNotFoundException.class,
+        () -> cartRepositoryService.addItem(dosai(), "42", "10"));
+  }
+
   private Item dosai() throws IOException {
     String fixture =
         FixtureHelpers.fixture(FIXTURES + "/item_dosai.json");
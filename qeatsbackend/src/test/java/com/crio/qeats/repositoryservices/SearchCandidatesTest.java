@@ -0,0 +1,84 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class SearchCandidatesTest {
+
+  private static final LocalTime NOON = LocalTime.of(12, 0);
+
+  @Test
+  void higherScoresRankFirstAndSourcesAddUp() {
+    RestaurantEntity exact = restaurant("1", 20.0, 30.0);
+    RestaurantEntity partial = restaurant("2", 20.0, 30.0);
+    RestaurantEntity item = restaurant("3", 20.0, 30.0);
+
+    SearchCandidates<RestaurantEntity> candidates = SearchCandidates.ofEntities();
+    candidates.add(Arrays.asList(item), 2);
+    candidates.add(Arrays.asList(partial, exact), 4);
+    candidates.add(Arrays.asList(exact), 8);
+
+    assertEquals(Arrays.asList("1", "2", "3"), ids(candidates.rank(20.0, 30.0, NOON, 5.0)));
+  }
+
+  @Test
+  void tiesAreBrokenByDistance() {
+    SearchCandidates<RestaurantEntity> candidates = SearchCandidates.ofEntities();
+    candidates.add(Arrays.asList(restaurant("far", 20.02, 30.0),
+        restaurant("near", 20.001, 30.0)), 4);
+
+    assertEquals(Arrays.asList("near", "far"), ids(candidates.rank(20.0, 30.0, NOON, 5.0)));
+  }
+
+  @Test
+  void closedAndFarAwayRestaurantsAreDropped() {
+    RestaurantEntity closed = restaurant("closed", 20.0, 30.0);
+    closed.setClosesAt("11:00");
+
+    SearchCandidates<RestaurantEntity> candidates = SearchCandidates.ofEntities();
+    candidates.add(Arrays.asList(closed, restaurant("far", 21.0, 30.0),
+        restaurant("open", 20.0, 30.0)), 4);
+
+    assertEquals(Arrays.asList("open"), ids(candidates.rank(20.0, 30.0, NOON, 5.0)));
+  }
+
+  @Test
+  void duplicatesWithinASourceAreScoredOnce() {
+    RestaurantEntity repeated = restaurant("1", 20.0, 30.0);
+
+    SearchCandidates<RestaurantEntity> candidates = SearchCandidates.ofEntities();
+    candidates.add(Arrays.asList(repeated, repeated, repeated), 1);
+    candidates.add(Arrays.asList(restaurant("2", 20.0, 30.0)), 2);
+
+    assertEquals(Arrays.asList("2", "1"), ids(candidates.rank(20.0, 30.0, NOON, 5.0)));
+  }
+
+  private static RestaurantEntity restaurant(String restaurantId, double latitude,
+      double longitude) {
+    RestaurantEntity restaurant = new RestaurantEntity();
+    restaurant.setRestaurantId(restaurantId);
+    restaurant.setLatitude(latitude);
+    restaurant.setLongitude(longitude);
+    restaurant.setOpensAt("10:00");
+    restaurant.setClosesAt("23:00");
+    return restaurant;
+  }
+
+  private static List<String> ids(List<RestaurantEntity> restaurants) {
+    return restaurants.stream()
+        .map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+}
@@ -142,6 +142,24 @@ class CartAndOrderServiceTest {
     assertEquals(cart.getRestaurantId(), restaurantId.getValue());
   }
 
+  @Test
+  void addItemFromAnotherRestaurantReturnsTheUnchangedCart() throws Exception {
+    Cart cart = loadSampleCart();
+    Item item = loadSampleItem();
+
+    when(menuService.findItem(any(String.class), any(String.class))).thenReturn(item);
+    when(cartRepositoryService.addItem(any(Item.class), any(String.class), any(String.class)))
+        .thenThrow(new ItemNotFromSameRestaurantException());
+    when(cartRepositoryService.findCartByCartId(cart.getId())).thenReturn(cart);
+
+    CartModifiedResponse response = cartAndOrderService
+        .addItemToCart(item.getItemId(), cart.getId(), "11");
+
+    assertEquals(cart.toString(), response.getCart().toString());
+    assertEquals(new ItemNotFromSameRestaurantException().getErrorType(),
+        response.getCartResponseType());
+  }
+
   @Test
   void removeItemFromCart() throws Exception {
     Cart cart = loadSampleCart();
@@ -0,0 +1,242 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.exchanges.GetRestaurantsRequest;
+import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.executors.SearchExecutor;
+import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class RestaurantServiceDeadlineTest {
+
+  private static final LocalTime OFF_PEAK = LocalTime.of(11, 0);
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private SearchExecutor searchExecutor;
+
+  @Mock
+  private RestaurantRepositoryService restaurantRepositoryServiceMock;
+
+  @InjectMocks
+  private RestaurantServiceImpl restaurantService;
+
+  @BeforeEach
+  void setup() {
+    searchExecutor = new SearchExecutor();
+    searchExecutor.initExecutor();
+    ReflectionTestUtils.setField(restaurantService, "searchExecutor", searchExecutor);
+    ReflectionTestUtils.setField(restaurantService, "meterRegistry", meterRegistry);
+    restaurantService.setSearchDeadlineMs(200);
+  }
+
+  @AfterEach
+  void teardown() {
+    release.countDown();
+    searchExecutor.shutdown();
+  }
+
+  @Test
+  void legMissingTheDeadlineIsLeftOutOfAPartialResponse() throws Exception {
+    when(restaurantRepositoryServiceMock.findRestaurantsByName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> {
+          release.await(5, TimeUnit.SECONDS);
+          return restaurants("12");
+        });
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("11"));
+
+    GetRestaurantsResponse response = restaurantService.findRestaurantsBySearchQueryMt(
+        new GetRestaurantsRequest(20.0, 30.0, "biryani"), OFF_PEAK);
+
+    assertEquals(Arrays.asList("11"), ids(response));
+    assertTrue(response.isPartial());
+    assertEquals(1.0, meterRegistry.get("qeats.search.leg.timeouts")
+        .tag("leg", "name").counter().count());
+    assertEquals(1.0, meterRegistry.get("qeats.search.partial").counter().count());
+  }
+
+  @Test
+  void legsWithinTheDeadlineAreMergedAndRanked() throws Exception {
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameExact(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("12"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("12", "14"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributes(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("11"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("14"));
+
+    GetRestaurantsResponse response = restaurantService.findRestaurantsBySearchQueryMt(
+        new GetRestaurantsRequest(20.0, 30.0, "biryani"), OFF_PEAK);
+
+    assertEquals(Arrays.asList("12", "14", "11"), ids(response));
+    assertFalse(response.isPartial());
+    assertEquals(null, meterRegistry.find("qeats.search.partial").counter());
+    verify(restaurantRepositoryServiceMock, never()).findRestaurantsBySearchQuery(anyDouble(),
+        anyDouble(), anyString(), any(LocalTime.class), anyDouble());
+  }
+
+  @Test
+  void failedLegIsLeftOutOfAPartialResponse() throws Exception {
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributes(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenThrow(new IllegalStateException("mongo down"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("12"));
+
+    GetRestaurantsResponse response = restaurantService.findRestaurantsBySearchQueryMt(
+        new GetRestaurantsRequest(20.0, 30.0, "biryani"), OFF_PEAK);
+
+    assertEquals(Arrays.asList("12"), ids(response));
+    assertTrue(response.isPartial());
+    assertEquals(1.0, meterRegistry.get("qeats.search.leg.failures")
+        .tag("leg", "attributes").counter().count());
+    assertEquals(1.0, meterRegistry.get("qeats.search.partial").counter().count());
+  }
+
+  @Test
+  void asyncSearchMergesAndRanksTheLegs() throws Exception {
+    when(restaurantRepositoryServiceMock.findRestaurantsByName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("14"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributes(anyDouble(),
+        anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("11", "14"));
+
+    GetRestaurantsResponse response = restaurantService.findRestaurantsBySearchQueryAsync(
+        new GetRestaurantsRequest(20.0, 30.0, "biryani"), OFF_PEAK).get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList("14", "11"), ids(response));
+    assertFalse(response.isPartial());
+    verify(restaurantRepositoryServiceMock, never()).findRestaurantsBySearchQuery(anyDouble(),
+        anyDouble(), anyString(), any(LocalTime.class), anyDouble());
+  }
+
+  @Test
+  void asyncLegMissingTheDeadlineIsLeftOutOfAPartialResponse() throws Exception {
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> {
+          release.await(5, TimeUnit.SECONDS);
+          return restaurants("12");
+        });
+    when(restaurantRepositoryServiceMock.findRestaurantsByName(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("11"));
+
+    CompletableFuture<GetRestaurantsResponse> pending = restaurantService
+        .findRestaurantsBySearchQueryAsync(new GetRestaurantsRequest(20.0, 30.0, "biryani"),
+            OFF_PEAK);
+    GetRestaurantsResponse response = pending.get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList("11"), ids(response));
+    assertTrue(response.isPartial());
+    assertEquals(1.0, meterRegistry.get("qeats.search.leg.timeouts")
+        .tag("leg", "itemName").counter().count());
+  }
+
+  @Test
+  void asyncFailedLegIsLeftOutOfAPartialResponse() throws Exception {
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameExact(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenThrow(new IllegalStateException("mongo down"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributes(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(restaurants("13"));
+
+    GetRestaurantsResponse response = restaurantService.findRestaurantsBySearchQueryAsync(
+        new GetRestaurantsRequest(20.0, 30.0, "biryani"), OFF_PEAK).get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList("13"), ids(response));
+    assertTrue(response.isPartial());
+    assertEquals(1.0, meterRegistry.get("qeats.search.leg.failures")
+        .tag("leg", "exactName").counter().count());
+  }
+
+  @Test
+  void asyncSearchCountsTheWholeLastPeakMinuteAsPeak() throws Exception {
+    restaurantService.findRestaurantsBySearchQueryAsync(
+        new GetRestaurantsRequest(20.0, 30.0, "biryani"), LocalTime.of(10, 0, 30))
+        .get(5, TimeUnit.SECONDS);
+
+    verify(restaurantRepositoryServiceMock).findRestaurantsByName(anyDouble(),
+        anyDouble(), anyString(), any(LocalTime.class), eq(3.0));
+  }
+
+  @Test
+  void searchCountsTheWholeLastPeakMinuteAsPeak() {
+    when(restaurantRepositoryServiceMock.findRestaurantsBySearchQuery(anyDouble(), anyDouble(),
+        anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(new ArrayList<>());
+
+    restaurantService.findRestaurantsBySearchQuery(
+        new GetRestaurantsRequest(20.0, 30.0, "biryani"), LocalTime.of(10, 0, 30));
+
+    verify(restaurantRepositoryServiceMock).findRestaurantsBySearchQuery(anyDouble(),
+        anyDouble(), anyString(), any(LocalTime.class), eq(3.0));
+  }
+
+  private static List<Restaurant> restaurants(String... restaurantIds) {
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (String restaurantId : restaurantIds) {
+      Restaurant restaurant = new Restaurant();
+      restaurant.setRestaurantId(restaurantId);
+      restaurant.setLatitude(20.0);
+      restaurant.setLongitude(30.0);
+      restaurant.setOpensAt("10:00");
+      restaurant.setClosesAt("22:00");
+      restaurants.add(restaurant);
+    }
+    return restaurants;
+  }
+
+  private static List<String> ids(GetRestaurantsResponse response) {
+    return response.getRestaurants().stream().map(Restaurant::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+}
@@ -96,12 +96,11 @@ class RestaurantServiceTest {
 
   @Test
   void normalHourFindRestaurantsSearchQuery() throws IOException {
-    when(restaurantRepositoryServiceMock.findRestaurantsByName(any(Double.class),
+    List<Restaurant> rankedRestaurants = loadRestaurantsDuringNormalHours();
+    rankedRestaurants.addAll(loadRestaurantsSearchedByAttributes());
+    when(restaurantRepositoryServiceMock.findRestaurantsBySearchQuery(any(Double.class),
         any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
-        .thenReturn(loadRestaurantsDuringNormalHours());
-    when(restaurantRepositoryServiceMock.findRestaurantsByAttributes(any(Double.class),
-        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
-        .thenReturn(loadRestaurantsSearchedByAttributes());
+        .thenReturn(rankedRestaurants);
 
     GetRestaurantsRequest getRestaurantsRequest = new GetRestaurantsRequest(20.0, 30.0);
     getRestaurantsRequest.setSearchFor("Test");
@@ -109,12 +108,6 @@ class RestaurantServiceTest {
     GetRestaurantsResponse allRestaurantsSearchResults = restaurantService
         .findRestaurantsBySearchQuery(getRestaurantsRequest, LocalTime.of(22, 0));
 
-    verify(restaurantRepositoryServiceMock, times(1))
-        .findRestaurantsByName(any(Double.class), any(Double.class), any(String.class),
-            any(LocalTime.class), any(Double.class));
-    verify(restaurantRepositoryServiceMock, times(1))
-        .findRestaurantsByAttributes(any(Double.class), any(Double.class), any(String.class),
-            any(LocalTime.class), any(Double.class));
     assertEquals(4, allRestaurantsSearchResults.getRestaurants().size());
     assertEquals("10", allRestaurantsSearchResults.getRestaurants().get(0).getRestaurantId());
     assertEquals("11", allRestaurantsSearchResults.getRestaurants().get(1).getRestaurantId());
@@ -124,24 +117,25 @@ class RestaurantServiceTest {
 
     ArgumentCaptor<Double> servingRadiusInKms = ArgumentCaptor.forClass(Double.class);
     verify(restaurantRepositoryServiceMock, times(1))
-        .findRestaurantsByName(any(Double.class), any(Double.class), any(String.class),
+        .findRestaurantsBySearchQuery(any(Double.class), any(Double.class), any(String.class),
             any(LocalTime.class), servingRadiusInKms.capture());
     assertEquals(servingRadiusInKms.getValue().toString(), "5.0");
 
-    verify(restaurantRepositoryServiceMock, times(1))
+    verify(restaurantRepositoryServiceMock, times(0))
+        .findRestaurantsByName(any(Double.class), any(Double.class), any(String.class),
+            any(LocalTime.class), any(Double.class));
+    verify(restaurantRepositoryServiceMock, times(0))
         .findRestaurantsByAttributes(any(Double.class), any(Double.class), any(String.class),
-            any(LocalTime.class), servingRadiusInKms.capture());
-    assertEquals(servingRadiusInKms.getValue().toString(), "5.0");
+            any(LocalTime.class), any(Double.class));
   }
 
   @Test
   void peakHourFindRestaurantsSearchQuery() throws IOException {
-    when(restaurantRepositoryServiceMock.findRestaurantsByName(any(Double.class),
+    List<Restaurant> rankedRestaurants = loadRestaurantsDuringPeakHours();
+    rankedRestaurants.addAll(loadRestaurantsSearchedByAttributes());
+    when(restaurantRepositoryServiceMock.findRestaurantsBySearchQuery(any(Double.class),
         any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
-        .thenReturn(loadRestaurantsDuringPeakHours());
-    when(restaurantRepositoryServiceMock.findRestaurantsByAttributes(any(Double.class),
-        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
-        .thenReturn(loadRestaurantsSearchedByAttributes());
+        .thenReturn(rankedRestaurants);
 
     GetRestaurantsRequest getRestaurantsRequest = new GetRestaurantsRequest(20.0, 30.0);
     getRestaurantsRequest.setSearchFor("Test");
@@ -149,29 +143,24 @@ class RestaurantServiceTest {
     GetRestaurantsResponse allRestaurantsSearchResults = restaurantService
         .findRestaurantsBySearchQuery(getRestaurantsRequest, LocalTime.of(20, 0));
 
-    verify(restaurantRepositoryServiceMock, times(1))
-        .findRestaurantsByName(any(Double.class), any(Double.class), any(String.class),
-            any(LocalTime.class), any(Double.class));
-    verify(restaurantRepositoryServiceMock, times(1))
-        .findRestaurantsByAttributes(any(Double.class), any(Double.class), any(String.class),
-            any(LocalTime.class), any(Double.class));
     assertEquals(3, allRestaurantsSearchResults.getRestaurants().size());
     assertEquals("11", allRestaurantsSearchResults.getRestaurants().get(0).getRestaurantId());
     assertEquals("12", allRestaurantsSearchResults.getRestaurants().get(1).getRestaurantId());
     assertEquals("abcdc864835e31495d621234",
         allRestaurantsSearchResults.getRestaurants().get(2).getRestaurantId());
 
-
     ArgumentCaptor<Double> servingRadiusInKms = ArgumentCaptor.forClass(Double.class);
     verify(restaurantRepositoryServiceMock, times(1))
-        .findRestaurantsByName(any(Double.class), any(Double.class), any(String.class),
+        .findRestaurantsBySearchQuery(any(Double.class), any(Double.class), any(String.class),
             any(LocalTime.class), servingRadiusInKms.capture());
     assertEquals(servingRadiusInKms.getValue().toString(), "3.0");
 
-    verify(restaurantRepositoryServiceMock, times(1))
+    verify(restaurantRepositoryServiceMock, times(0))
+        .findRestaurantsByName(any(Double.class), any(Double.class), any(String.class),
+            any(LocalTime.class), any(Double.class));
+    verify(restaurantRepositoryServiceMock, times(0))
         .findRestaurantsByAttributes(any(Double.class), any(Double.class), any(String.class),
-            any(LocalTime.class), servingRadiusInKms.capture());
-    assertEquals(servingRadiusInKms.getValue().toString(), "3.0");
+            any(LocalTime.class), any(Double.class));
   }
 
   @Test
@@ -188,6 +177,9 @@ class RestaurantServiceTest {
     verify(restaurantRepositoryServiceMock, times(0))
         .findRestaurantsByAttributes(any(Double.class), any(Double.class), any(String.class),
             any(LocalTime.class), any(Double.class));
+    verify(restaurantRepositoryServiceMock, times(0))
+        .findRestaurantsBySearchQuery(any(Double.class), any(Double.class), any(String.class),
+            any(LocalTime.class), any(Double.class));
     assertEquals(0, allRestaurantsCloseBy.getRestaurants().size());
   }
 
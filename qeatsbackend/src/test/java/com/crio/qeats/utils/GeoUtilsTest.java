@@ -10,7 +10,11 @@
 package com.crio.qeats.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import ch.hsr.geohash.GeoHash;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class GeoUtilsTest {
@@ -29,4 +33,19 @@ class GeoUtilsTest {
     assertEquals(3.04, distanceBetweenA2bHsrAndA2bBtm, 0.1);
   }
 
+  @Test
+  public void geoHashesCoveringIncludeNeighboursWithinRadius() {
+    List<String> geoHashes = GeoUtils.geoHashesCovering(20.0, 30.0, 3.0, 5);
+
+    assertEquals(Arrays.asList("set3d", "set3e", "set3f", "set3g"), geoHashes);
+  }
+
+  @Test
+  public void geoHashesCoveringWrapAroundTheAntimeridian() {
+    List<String> geoHashes = GeoUtils.geoHashesCovering(10.0, 179.99, 5.0, 5);
+
+    assertTrue(geoHashes.contains(GeoHash.geoHashStringWithCharacterPrecision(10.0, 179.99, 5)));
+    assertTrue(geoHashes.contains(GeoHash.geoHashStringWithCharacterPrecision(10.0, -179.99, 5)));
+  }
+
 }
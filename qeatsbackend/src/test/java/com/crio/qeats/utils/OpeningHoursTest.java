@@ -0,0 +1,64 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+class OpeningHoursTest {
+
+  @Test
+  public void parsesTimeOfDayIntoMinutes() {
+    assertEquals(0, OpeningHours.toMinuteOfDay("00:00"));
+    assertEquals(18 * 60, OpeningHours.toMinuteOfDay("18:00"));
+    assertEquals(9 * 60 + 30, OpeningHours.toMinuteOfDay("9:30"));
+    assertEquals(23 * 60 + 59, OpeningHours.toMinuteOfDay("23:59:59"));
+    assertEquals(19 * 60 + 5, OpeningHours.minuteOfDay(LocalTime.of(19, 5, 30)));
+  }
+
+  @Test
+  public void invalidTimesAreRejected() {
+    assertEquals(OpeningHours.INVALID, OpeningHours.toMinuteOfDay(null));
+    assertEquals(OpeningHours.INVALID, OpeningHours.toMinuteOfDay(""));
+    assertEquals(OpeningHours.INVALID, OpeningHours.toMinuteOfDay("24:00"));
+    assertEquals(OpeningHours.INVALID, OpeningHours.toMinuteOfDay("12:6"));
+    assertEquals(OpeningHours.INVALID, OpeningHours.toMinuteOfDay("ab:cd"));
+    assertFalse(OpeningHours.isOpen(OpeningHours.INVALID, 600, 300));
+  }
+
+  @Test
+  public void openFromOpeningMinuteUntilClosingMinute() {
+    int opensAt = OpeningHours.toMinuteOfDay("18:00");
+    int closesAt = OpeningHours.toMinuteOfDay("23:00");
+
+    assertFalse(OpeningHours.isOpen(opensAt, closesAt, 17 * 60 + 59));
+    assertTrue(OpeningHours.isOpen(opensAt, closesAt, 18 * 60));
+    assertTrue(OpeningHours.isOpen(opensAt, closesAt, 22 * 60 + 59));
+    assertFalse(OpeningHours.isOpen(opensAt, closesAt, 23 * 60));
+  }
+
+  @Test
+  public void windowsCanCrossMidnight() {
+    int opensAt = OpeningHours.toMinuteOfDay("18:00");
+    int closesAt = OpeningHours.toMinuteOfDay("02:00");
+
+    assertTrue(OpeningHours.isOpen(opensAt, closesAt, 23 * 60));
+    assertTrue(OpeningHours.isOpen(opensAt, closesAt, 60));
+    assertFalse(OpeningHours.isOpen(opensAt, closesAt, 2 * 60));
+    assertFalse(OpeningHours.isOpen(opensAt, closesAt, 12 * 60));
+  }
+
+  @Test
+  public void sameOpeningAndClosingMeansOpenAllDay() {
+    assertTrue(OpeningHours.isOpen(0, 0, 0));
+    assertTrue(OpeningHours.isOpen(0, 0, 23 * 60 + 59));
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class SearchTermsTest {
+
+  @Test
+  void tokenizeLowerCasesAndSplitsOnPunctuation() {
+    assertEquals(Arrays.asList("a2b", "adyar", "caf\u00e9"),
+        SearchTerms.tokenize("  A2B-Adyar (CAF\u00c9)"));
+    assertTrue(SearchTerms.tokenize(".*").isEmpty());
+    assertTrue(SearchTerms.tokenize(null).isEmpty());
+  }
+
+  @Test
+  void normalizeJoinsTermsWithSingleSpaces() {
+    assertEquals("pizza hut", SearchTerms.normalize("  Pizza-HUT "));
+  }
+
+  @Test
+  void matchesAllRequiresEveryQueryTermToPrefixATerm() {
+    assertTrue(SearchTerms.matchesAll(Arrays.asList("south", "ind"),
+        Arrays.asList("Tamil", "South Indian")));
+    assertTrue(SearchTerms.matchesAll(Arrays.asList("tam", "ind"),
+        Arrays.asList("Tamil", "South Indian")));
+    assertFalse(SearchTerms.matchesAll(Arrays.asList("south", "chinese"),
+        Arrays.asList("Tamil", "South Indian")));
+    assertFalse(SearchTerms.matchesAll(Collections.emptyList(),
+        Collections.singletonList("Tamil")));
+    assertFalse(SearchTerms.matchesAll(Collections.singletonList("tamil"), null));
+  }
+
+  @Test
+  void prefixPatternMatchesTheStartOfATerm() {
+    assertTrue(SearchTerms.prefixPattern("ind").matcher("South Indian").find());
+    assertTrue(SearchTerms.prefixPattern("hut").matcher("Pizza-Hut").find());
+    assertFalse(SearchTerms.prefixPattern("dian").matcher("South Indian").find());
+    assertFalse(SearchTerms.prefixPattern("(veg").matcher("Biryani Veg").find());
+    assertFalse(SearchTerms.prefixPattern(".*").matcher("Pizza Hut").find());
+  }
+
+  @Test
+  void exactPatternMatchesTheNormalizedText() {
+    assertTrue(SearchTerms.exactPattern(Arrays.asList("pizza", "hut"))
+        .matcher("  PIZZA-hut ").find());
+    assertFalse(SearchTerms.exactPattern(Arrays.asList("pizza", "hut"))
+        .matcher("Pizza Hut Express").find());
+    assertFalse(SearchTerms.exactPattern(Collections.singletonList("a2b"))
+        .matcher("A2B Adyar").find());
+  }
+}